@@ -28,6 +28,7 @@ import codes.thischwa.c5c.GenericConnector.FileProperties;
 import codes.thischwa.c5c.GenericConnector.StreamContent;
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.exception.FilemanagerException;
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
 import codes.thischwa.c5c.requestcycle.BackendPathBuilder;
 
 /**
@@ -51,6 +52,11 @@ public interface Connector {
 	 */
 	public void init() throws RuntimeException;
 
+	/**
+	 * Releases the resources of the connector. It's called if the servlet is taken out of service.
+	 */
+	public void destroy();
+
 	/**
 	 * Setter for the file extensions for images. It will be used for additional checks and the handling of file properties.
 	 * 
@@ -66,7 +72,8 @@ public interface Connector {
 	 *            the requested backend folder, e.g. <code>/UserFiles/Image/</code>
 	 * @param needSize
 	 *            Mainly for image files. <code>true</code> indicates that the dimension of the image should be set in the
-	 *            {@link GenericConnector.FileProperties}.
+	 *            {@link GenericConnector.FileProperties}. If it's <code>false</code>, the image data shouldn't be read
+	 *            at all, the filemanager fetches the dimension by 'getinfo'.
 	 * @return a list of {@link GenericConnector.FileProperties} objects prefilled with data of the files inside the requested folder. To
 	 *         initialize this object use {@link GenericConnector#buildForFile(String, boolean, long, java.util.Date)},
 	 *         {@link GenericConnector#buildForDirectory(String, boolean, java.util.Date)} or
@@ -145,6 +152,23 @@ public interface Connector {
 	 */
 	public GenericConnector.StreamContent download(String backendPath) throws C5CException;
 
+	/**
+	 * Executes the 'download'-method of the filemanager for a range of the file, it's used for the partial content of
+	 * the download and the preview, e.g. to resume a download or to seek in a video. The implementation should read
+	 * the range positional, so the bytes before the offset aren't read.
+	 * 
+	 * @param backendPath
+	 *            the requested file to download, e.g. <code>/UserFiles/folder/video.mp4</code>
+	 * @param offset
+	 *            the position of the first byte of the range
+	 * @param length
+	 *            the length of the range
+	 * @return {@link GenericConnector.StreamContent} which holds the required data of the range. Its size has to be
+	 *         the length of the range.
+	 * @throws C5CException
+	 */
+	public GenericConnector.StreamContent download(String backendPath, long offset, long length) throws C5CException;
+
 	/**
 	 * Generates a thumbnail of the requested image ('backendPath') and writes it to the returned {@link StreamContent}. The caller has to
 	 * ensure that 'backendPath' is an image. <br/>
@@ -172,8 +196,10 @@ public interface Connector {
 	 * @return {@link GenericConnector.StreamContent} which holds the required data of the image. Use
 	 *         {@link GenericConnector#buildStreamContent(InputStream, long)} to build it.
 	 * @throws IOException
+	 * @throws ServiceUnavailableException
+	 *             if the image processing is overloaded, the client should retry the upload later
 	 */
-	public StreamContent resize(InputStream imageIn, String imageExt, Dimension dim) throws IOException;
+	public StreamContent resize(InputStream imageIn, String imageExt, Dimension dim) throws IOException, ServiceUnavailableException;
 
 	/**
 	 * Generates a preview of the requested image ('backendPath') and writes it to the returned {@link StreamContent}.
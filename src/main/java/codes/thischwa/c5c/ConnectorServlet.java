@@ -11,7 +11,9 @@
 package codes.thischwa.c5c;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.HttpServlet;
@@ -22,7 +24,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.response.BinaryResponse;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.requestcycle.response.mode.CreateFolder;
+import codes.thischwa.c5c.requestcycle.response.mode.Delete;
+import codes.thischwa.c5c.requestcycle.response.mode.EditFile;
+import codes.thischwa.c5c.requestcycle.response.mode.FileInfo;
+import codes.thischwa.c5c.requestcycle.response.mode.Rename;
+import codes.thischwa.c5c.requestcycle.response.mode.Replace;
+import codes.thischwa.c5c.requestcycle.response.mode.SaveFile;
+import codes.thischwa.c5c.requestcycle.response.mode.UploadFile;
+import codes.thischwa.c5c.util.JacksonRegistry;
 import codes.thischwa.c5c.util.StringUtils;
 
 /**
@@ -44,7 +56,12 @@ import codes.thischwa.c5c.util.StringUtils;
  * }
  * </pre>
  * 
- * Assuming the filemanager is installed in the <code>/filemanager</code> folder in your webapp.
+ * Assuming the filemanager is installed in the <code>/filemanager</code> folder in your webapp.<br/>
+ * <br/>
+ * If <code>connector.async.enabled</code> is set, the binary content of downloads, previews and thumbnails is written
+ * asynchronously, so a slow client doesn't block a thread of the container. The servlet has to be declared with
+ * <code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code> then, otherwise the content is written
+ * synchronously as before.
  */
 @MultipartConfig
 public class ConnectorServlet extends HttpServlet {
@@ -55,18 +72,25 @@ public class ConnectorServlet extends HttpServlet {
 
 	private static Logger logger = LoggerFactory.getLogger(ConnectorServlet.class);
 
+	private Connector connector;
+
 	private GenericDispatcher dispatcherGET;
 	private GenericDispatcher dispatcherPUT;
+	private ThumbnailPregenerator thumbnailPregenerator;
+	private ThumbnailWarmUp thumbnailWarmUp;
+
+	private boolean asyncEnabled;
+	private long asyncTimeout;
 
 	/**
-	 * Initializes this servlet. It initializes the {@link DispatcherGET} and {@link UserObjectProxy}.
+	 * Initializes this servlet. It initializes the {@link DispatcherGET} and {@link UserObjectProxy}
+	 * and warms up the {@link JacksonRegistry}.
 	 */
 	@Override
 	public void init() throws ServletException {
 		String connectorClassName = PropertiesLoader.getProperty(propertyKey_connectorImpl);
 		if(StringUtils.isNullOrEmpty(connectorClassName))
 			throw new RuntimeException("Empty Connector implementation class name not allowed.");
-		Connector connector;
 		try {
 			Class<?> clazz = Class.forName(connectorClassName);
 			connector = (Connector) clazz.newInstance();
@@ -85,13 +109,44 @@ public class ConnectorServlet extends HttpServlet {
 		}
 
 		connector.init();
+		UserObjectProxy.getImageProcessingScheduler().registerMBean();
 		
 		dispatcherGET = new DispatcherGET(connector);
-		dispatcherPUT = new DispatcherPUT(connector);
+		thumbnailPregenerator = new ThumbnailPregenerator(connector, UserObjectProxy.getThumbnailDimension(),
+				UserObjectProxy.getPreviewDimension(), PropertiesLoader.getThumbnailPregenerationThreads(), PropertiesLoader.getThumbnailPregenerationQueueSize());
+		dispatcherPUT = new DispatcherPUT(connector, thumbnailPregenerator);
+
+		// build the JSON writers in advance, so the first requests don't pay for the introspection,
+		// the folder items of 'getfolder' are serialized as map
+		JacksonRegistry.warmUp(FileInfo.class, LinkedHashMap.class, CreateFolder.class, Rename.class, Delete.class,
+				SaveFile.class, EditFile.class, UploadFile.class, Replace.class, GenericResponse.class);
+
+		thumbnailWarmUp = new ThumbnailWarmUp(connector, UserObjectProxy.getThumbnailDimension(),
+				UserObjectProxy.getFilemanagerDefaultConfig().getImages().getExtensions(),
+				PropertiesLoader.getThumbnailWarmUpRoots(), PropertiesLoader.getThumbnailWarmUpRate());
+		thumbnailWarmUp.start();
+
+		asyncEnabled = PropertiesLoader.isAsyncEnabled();
+		asyncTimeout = PropertiesLoader.getAsyncTimeout();
 		
 		logger.info(String.format("*** %s sucessful initialized.", this.getClass().getName()));
 	}
 
+	/**
+	 * Takes this servlet out of service. It releases the resources of the connector.
+	 */
+	@Override
+	public void destroy() {
+		if(thumbnailWarmUp != null)
+			thumbnailWarmUp.stop();
+		if(thumbnailPregenerator != null)
+			thumbnailPregenerator.shutdown();
+		if(connector != null)
+			connector.destroy();
+		UserObjectProxy.getImageProcessingScheduler().unregisterMBean();
+		super.destroy();
+	}
+
 	static void initResponseHeader(HttpServletResponse resp) {
 		// set some default headers 
 		resp.setHeader("Cache-Control", "no-cache");
@@ -113,10 +168,19 @@ public class ConnectorServlet extends HttpServlet {
 	}
 	
 	private void doRequest(HttpServletRequest req, HttpServletResponse resp, GenericDispatcher dispatcher) throws ServletException {
+		thumbnailWarmUp.requestStarted();
 		try {
 			RequestData.beginRequest(req);
 			GenericResponse response = dispatcher.doRequest();
-			response.write(resp);
+			if(isAsyncWritable(req, response)) {
+				// the content is written by the container as soon as the client is ready, this thread returns at once;
+				// the writing doesn't need the RequestData, so the request cycle ends below as usual
+				AsyncContext asyncContext = req.startAsync();
+				asyncContext.setTimeout(asyncTimeout);
+				((BinaryResponse) response).writeAsync(resp, asyncContext);
+			} else {
+				response.write(resp);
+			}
 		} catch (Exception e) {
 			throw new ServletException(e);
 		} finally {
@@ -125,6 +189,12 @@ public class ConnectorServlet extends HttpServlet {
 			 * memory
 			 */
 			RequestData.endRequest();
+			thumbnailWarmUp.requestFinished();
 		}
 	}
+
+	private boolean isAsyncWritable(HttpServletRequest req, GenericResponse response) {
+		return asyncEnabled && req.isAsyncSupported() && response instanceof BinaryResponse
+				&& ((BinaryResponse) response).isAsyncWritable();
+	}
 }
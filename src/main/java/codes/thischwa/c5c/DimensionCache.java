@@ -0,0 +1,245 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for the dimensions of images. An entry is keyed by the backend path, the last-modified time and the size of the
+ * image, so a changed image is never served with a stale dimension. The cache is bounded, the least recently used
+ * entries will be evicted.<br/>
+ * The backend path is the path by which the {@link Connector} identifies the file in its storage backend, it isn't
+ * the url path of the filemanager. The {@link codes.thischwa.c5c.impl.LocalConnector} uses the real path of the file
+ * in the file system, see {@link java.nio.file.Path#toString()}.<br/>
+ * Optionally the entries are persisted to an index file, see {@link #load()} and {@link #save()}.<br/>
+ * <br/>
+ * Implementations of the {@link Connector} should call {@link #invalidate(String)} if a file or folder is changed.
+ * The {@link codes.thischwa.c5c.impl.LocalConnector} does it for all mutating actions.
+ */
+public class DimensionCache {
+	private static final Logger logger = LoggerFactory.getLogger(DimensionCache.class);
+
+	private static final Charset charset = Charset.forName("UTF-8");
+
+	private static final char separator = '\t';
+
+	private final int maxEntries;
+
+	private final Path indexFile;
+
+	private final Map<String, CachedDimension> entries;
+
+	/**
+	 * Instantiates a new dimension cache.
+	 *
+	 * @param maxEntries
+	 *            the max. number of entries, if it is less than 1 the cache is disabled
+	 * @param indexFile
+	 *            the index file to persist the entries, can be <code>null</code>
+	 */
+	public DimensionCache(final int maxEntries, Path indexFile) {
+		this.maxEntries = maxEntries;
+		this.indexFile = indexFile;
+		this.entries = new LinkedHashMap<String, CachedDimension>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedDimension> eldest) {
+				return size() > DimensionCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Checks if the cache is enabled.
+	 *
+	 * @return <code>true</code> if the cache is enabled
+	 */
+	public boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/**
+	 * Retrieves the cached dimension of an image.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @return the cached dimension, or <code>null</code> if there isn't a valid entry
+	 */
+	public Dimension get(String backendPath, long lastModified, long size) {
+		if(!isEnabled())
+			return null;
+		CachedDimension entry;
+		synchronized (entries) {
+			entry = entries.get(backendPath);
+		}
+		if(entry == null || entry.lastModified != lastModified || entry.size != size)
+			return null;
+		return new Dimension(entry.width, entry.height);
+	}
+
+	/**
+	 * Caches the dimension of an image.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @param dim
+	 *            the dimension of the image
+	 */
+	public void put(String backendPath, long lastModified, long size, Dimension dim) {
+		if(!isEnabled() || dim == null)
+			return;
+		CachedDimension entry = new CachedDimension(lastModified, size, dim.width, dim.height);
+		synchronized (entries) {
+			entries.put(backendPath, entry);
+		}
+	}
+
+	/**
+	 * Removes the entry of the desired backend path. If the path is a folder, all entries inside it are removed too.
+	 *
+	 * @param backendPath
+	 *            the backend path of a file or folder
+	 */
+	public void invalidate(String backendPath) {
+		if(!isEnabled() || backendPath == null)
+			return;
+		String path = backendPath;
+		while(path.length() > 1 && (path.endsWith(Constants.defaultSeparator) || path.endsWith(File.separator)))
+			path = path.substring(0, path.length() - 1);
+		String folderPrefix = path.concat(Constants.defaultSeparator);
+		String localFolderPrefix = path.concat(File.separator);
+		synchronized (entries) {
+			entries.remove(path);
+			Iterator<String> iter = entries.keySet().iterator();
+			while(iter.hasNext()) {
+				String key = iter.next();
+				if(key.startsWith(folderPrefix) || key.startsWith(localFolderPrefix))
+					iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Loads the entries of the index file, if it is set and exists.
+	 */
+	public void load() {
+		if(!isEnabled() || indexFile == null || !Files.exists(indexFile))
+			return;
+		int count = 0;
+		try (BufferedReader reader = Files.newBufferedReader(indexFile, charset)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] parts = line.split(String.valueOf(separator), 5);
+				if(parts.length != 5)
+					continue;
+				try {
+					CachedDimension entry = new CachedDimension(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+							Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+					synchronized (entries) {
+						entries.put(parts[4], entry);
+					}
+					count++;
+				} catch (NumberFormatException e) {
+					logger.debug("Ignoring corrupt line of the dimension index: {}", line);
+				}
+			}
+			logger.info("{} entries of the dimension index {} loaded.", count, indexFile);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while loading the dimension index %s.", indexFile), e);
+		}
+	}
+
+	/**
+	 * Saves the entries to the index file, if it is set. The file is written atomically.
+	 */
+	public void save() {
+		if(!isEnabled() || indexFile == null)
+			return;
+		Map<String, CachedDimension> snapshot;
+		synchronized (entries) {
+			snapshot = new LinkedHashMap<>(entries);
+		}
+		Path tempFile = null;
+		try {
+			Path dir = indexFile.toAbsolutePath().getParent();
+			Files.createDirectories(dir);
+			tempFile = Files.createTempFile(dir, indexFile.getFileName().toString(), ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tempFile, charset)) {
+				for(Map.Entry<String, CachedDimension> e : snapshot.entrySet()) {
+					CachedDimension entry = e.getValue();
+					writer.append(String.valueOf(entry.lastModified)).append(separator).append(String.valueOf(entry.size))
+							.append(separator).append(String.valueOf(entry.width)).append(separator)
+							.append(String.valueOf(entry.height)).append(separator).append(e.getKey());
+					writer.newLine();
+				}
+			}
+			Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			logger.info("{} entries of the dimension index {} saved.", snapshot.size(), indexFile);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while saving the dimension index %s.", indexFile), e);
+			if(tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException e1) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of the cached entries.
+	 *
+	 * @return the number of the cached entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static class CachedDimension {
+		private final long lastModified;
+		private final long size;
+		private final int width;
+		private final int height;
+
+		CachedDimension(long lastModified, long size, int width, int height) {
+			this.lastModified = lastModified;
+			this.size = size;
+			this.width = width;
+			this.height = height;
+		}
+	}
+}
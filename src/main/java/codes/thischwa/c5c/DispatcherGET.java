@@ -11,8 +11,10 @@
 package codes.thischwa.c5c;
 
 import java.awt.Dimension;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -20,11 +22,14 @@ import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import codes.thischwa.c5c.GenericConnector.StreamContent;
 import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.exception.FilemanagerException.Key;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.requestcycle.Context;
@@ -36,10 +41,16 @@ import codes.thischwa.c5c.requestcycle.response.mode.Download;
 import codes.thischwa.c5c.requestcycle.response.mode.EditFile;
 import codes.thischwa.c5c.requestcycle.response.mode.FileInfo;
 import codes.thischwa.c5c.requestcycle.response.mode.FolderInfo;
+import codes.thischwa.c5c.requestcycle.response.mode.NotModified;
+import codes.thischwa.c5c.requestcycle.response.mode.PartialContent;
 import codes.thischwa.c5c.requestcycle.response.mode.Prieview;
 import codes.thischwa.c5c.requestcycle.response.mode.Rename;
 import codes.thischwa.c5c.requestcycle.response.mode.ShowThumbnail;
+import codes.thischwa.c5c.requestcycle.response.mode.ZipDownload;
+import codes.thischwa.c5c.util.ByteRange;
 import codes.thischwa.c5c.util.FileUtils;
+import codes.thischwa.c5c.util.HttpValidators;
+import codes.thischwa.c5c.util.StringUtils;
 import codes.thischwa.c5c.util.VirtualFile;
 
 /**
@@ -49,6 +60,11 @@ import codes.thischwa.c5c.util.VirtualFile;
 final class DispatcherGET extends GenericDispatcher {
 	private static Logger logger = LoggerFactory.getLogger(DispatcherGET.class);
 
+	/** The hash of the settings of the encoding of derived images, it's a part of their entity tags. */
+	private static final String derivativeSettings = Integer.toHexString(String.format("%s/%s/%s/%s",
+			PropertiesLoader.getThumbnailJpegQuality(), PropertiesLoader.isThumbnailJpegProgressive(),
+			PropertiesLoader.getThumbnailPngCompression(), PropertiesLoader.isThumbnailExifEnabled()).hashCode());
+
 	/**
 	 * Instantiates and initializes the connector (object which extends the {@link GenericConnector});
 	 * 
@@ -86,16 +102,18 @@ final class DispatcherGET extends GenericDispatcher {
 				}
 				boolean needSize = Boolean.parseBoolean(req.getParameter("getsize"));
 				logger.debug("* getFolder -> urlPath: {}, backendPath: {}, needSize: {}", urlPath, backendPath, needSize);
+				int offset = parsePagingParameter(req, "offset");
+				int limit = parsePagingParameter(req, "limit");
 				Set<GenericConnector.FileProperties> props = connector.getFolder(backendPath, needSize);
-				resp = buildFolder(urlPath, props);
+				resp = buildFolder(urlPath, props, offset, limit);
 				break;
 			}
 			case INFO: {
 				String urlPath = req.getParameter("path");
 				String backendPath = buildBackendPath(urlPath);
-				boolean needSize = Boolean.parseBoolean(req.getParameter("getsize"));
-				logger.debug("* getInfo -> urlPath: {}, backendPath {}, needSize: {}", urlPath, backendPath, needSize);
-				GenericConnector.FileProperties fp = connector.getInfo(backendPath, needSize);
+				// the dimension of a single image is always delivered, that's the way to fetch it lazily after #getFolder
+				logger.debug("* getInfo -> urlPath: {}, backendPath {}", urlPath, backendPath);
+				GenericConnector.FileProperties fp = connector.getInfo(backendPath, true);
 				resp = buildFileInfo(urlPath, fp, fp.isDir());
 				break;
 			}
@@ -133,15 +151,45 @@ final class DispatcherGET extends GenericDispatcher {
 				String urlPath = req.getParameter("path");
 				String backendPath = buildBackendPath(urlPath);
 				logger.debug("* download -> urlPath: {}, backendPath: {}", urlPath, backendPath);
+				// the validators are taken from the attributes of the file, so a 304 doesn't open it
+				GenericConnector.FileProperties fp = connector.getInfo(backendPath, false);
+				String etag = buildETag(fp, null);
+				long lastModified = getLastModified(fp);
+				if(isNotModified(req, etag, lastModified)) {
+					resp = new NotModified(FilemanagerAction.DOWNLOAD, etag, lastModified);
+					break;
+				}
 				StreamContent sc = connector.download(backendPath);
-				resp = buildDownload(backendPath, sc);
+				resp = buildPartialContent(FilemanagerAction.DOWNLOAD, backendPath, sc, etag, lastModified, req);
+				if(resp == null)
+					resp = buildDownload(backendPath, sc, etag, lastModified);
+				break;
+			}
+			case ZIP: {
+				String[] urlPaths = req.getParameterValues("path");
+				if(urlPaths == null || urlPaths.length == 0)
+					throw new FilemanagerException(FilemanagerAction.ZIP, Key.InvalidVar, "path");
+				ZipArchiver archiver = new ZipArchiver(connector);
+				String name = "download";
+				for(String urlPath : urlPaths) {
+					String backendPath = buildBackendPath(urlPath);
+					logger.debug("* zip -> urlPath: {}, backendPath: {}", urlPath, backendPath);
+					GenericConnector.FileProperties fp = connector.getInfo(backendPath, false);
+					// the selection is checked before the archive is started, later on the entries are skipped only
+					if(!archiver.isArchivable(backendPath, fp))
+						throw new FilemanagerException(FilemanagerAction.ZIP, Key.NotAllowed);
+					archiver.add(backendPath, fp);
+					if(urlPaths.length == 1 && !StringUtils.isNullOrEmpty(fp.getName()))
+						name = fp.getName();
+				}
+				resp = new ZipDownload(String.format("%s.zip", name), archiver);
 				break;
 			}
 			case THUMBNAIL: {
 				String urlPath = req.getParameter("path");
 				String backendPath = buildBackendPath(urlPath);
 				logger.debug("* thumbnail -> urlPath: {}, backendPath: {}", urlPath, backendPath);
-				resp = buildThumbnailView(backendPath);
+				resp = buildThumbnailView(backendPath, req);
 				break;
 			}
 			case PREVIEW: {
@@ -150,10 +198,25 @@ final class DispatcherGET extends GenericDispatcher {
 				boolean thumbnail = Boolean.valueOf(req.getParameter("thumbnail"));
 				logger.debug("* thumbnail -> urlPath: {}, backendPath: {}, thumbnail: {}", urlPath, backendPath, thumbnail);
 				if(thumbnail) {
-					resp = buildThumbnailView(backendPath);					
+					resp = buildThumbnailView(backendPath, req);
 				} else {
-					StreamContent sc = connector.preview(backendPath, UserObjectProxy.getPreviewDimension());
-					resp = buildPrieview(backendPath, sc);
+					Dimension previewDim = UserObjectProxy.getPreviewDimension();
+					GenericConnector.FileProperties fp = connector.getInfo(backendPath, false);
+					// an image could be scaled, other files are previewed as they are
+					String ext = FilenameUtils.getExtension(backendPath);
+					String variant = (previewDim != null && imageExtensions.contains(ext)) ? buildVariant('p', previewDim) : null;
+					String etag = buildETag(fp, variant);
+					long lastModified = getLastModified(fp);
+					if(isNotModified(req, etag, lastModified)) {
+						resp = new NotModified(FilemanagerAction.PREVIEW, etag, lastModified);
+						break;
+					}
+					StreamContent sc = connector.preview(backendPath, previewDim);
+					// only an unscaled local file could be requested in ranges, e.g. to seek in a video
+					if(sc.getFile() != null)
+						resp = buildPartialContent(FilemanagerAction.PREVIEW, backendPath, sc, etag, lastModified, req);
+					if(resp == null)
+						resp = buildPrieview(backendPath, sc, etag, lastModified);
 				}
 				break;
 			}
@@ -175,21 +238,42 @@ final class DispatcherGET extends GenericDispatcher {
 		}
 	}
 
-	private FolderInfo buildFolder(String urlPath, Set<GenericConnector.FileProperties> fileProperties) {
+	private FolderInfo buildFolder(String urlPath, Set<GenericConnector.FileProperties> fileProperties, int offset, int limit) {
 		FolderInfo folderInfo = buildFolderInfo();
 		if(fileProperties == null)
 			return folderInfo;
-		List<GenericConnector.FileProperties> props = new ArrayList<>(fileProperties);
-		sortFileProperties(props, UserObjectProxy.getFilemanagerConfig().getOptions().getFileSorting());
-		List<FileInfo> infos = new ArrayList<>(props.size());
+		folderInfo.setTotalCount(fileProperties.size());
+		// just the requested page is built
+		List<GenericConnector.FileProperties> props = selectFileProperties(fileProperties,
+				UserObjectProxy.getFilemanagerConfig().getOptions().getFileSorting(), offset, limit);
 		for(GenericConnector.FileProperties fp : props) {
 			FileInfo fileInfo = buildFileInfo(urlPath, fp);
-			infos.add(fileInfo);
 			add(folderInfo, fileInfo);
 		}
 		return folderInfo;
 	}
 
+	/**
+	 * Parses a paging parameter of the 'getfolder' request.
+	 * 
+	 * @return the value of the parameter, or 0 if it isn't set
+	 * @throws C5CException
+	 *             if the value isn't a non-negative number
+	 */
+	private int parsePagingParameter(HttpServletRequest req, String name) throws C5CException {
+		String value = req.getParameter(name);
+		if(value == null || value.trim().isEmpty())
+			return 0;
+		try {
+			int number = Integer.parseInt(value.trim());
+			if(number >= 0)
+				return number;
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		throw new C5CException(FilemanagerAction.FOLDER, String.format("Invalid value of the parameter '%s': %s", name, value));
+	}
+
 	private FileInfo buildFileInfo(String urlPath, GenericConnector.FileProperties fp) {
 		return buildFileInfo(urlPath, fp, false);
 	}
@@ -204,7 +288,9 @@ final class DispatcherGET extends GenericDispatcher {
 			// attention: urlPath can be with or without a file name!
 			HttpServletRequest req = RequestData.getContext().getServletRequest();
 			String previewUrlPath = (urlPath.endsWith(vf.getName())) ? urlPath : urlPath.concat(fp.getName());
-			String query =  String.format("?mode=%s&path=%s&t=%s", FilemanagerAction.PREVIEW.getParameterName(), encode(previewUrlPath), Calendar.getInstance().getTimeInMillis());
+			// the url changes with the file only, so the browser could cache the preview and revalidate it
+			long version = (fp.getRawModified() != null) ? fp.getRawModified().getTime() : Calendar.getInstance().getTimeInMillis();
+			String query =  String.format("?mode=%s&path=%s&t=%s", FilemanagerAction.PREVIEW.getParameterName(), encode(previewUrlPath), version);
 			String preview = String.format("%s%s%s",req.getContextPath(), req.getServletPath(), query); 
 			fi.setPreviewPath(preview);
 		} else {
@@ -236,19 +322,90 @@ final class DispatcherGET extends GenericDispatcher {
 		return new CreateFolder(parentUrlPath, folderName);
 	}
 
-	private Download buildDownload(String fullPath, StreamContent sc) {
-		return new Download(fullPath, sc.getSize(), sc.getInputStream());
+	private Download buildDownload(String fullPath, StreamContent sc, String etag, long lastModified) {
+		return new Download(fullPath, sc.getSize(), sc.getInputStream(), sc.getFile(), etag, lastModified);
+	}
+
+	/**
+	 * Builds the partial content, if the request has a valid 'Range' header and its 'If-Range' header matches. The
+	 * ranges are read by {@link Connector#download(String, long, long)}, the stream of the whole content is closed then.
+	 * 
+	 * @return the partial content, or <code>null</code> if the whole content has to be sent
+	 */
+	private PartialContent buildPartialContent(FilemanagerAction mode, String fullPath, StreamContent sc, String etag,
+			long lastModified, HttpServletRequest req) throws C5CException {
+		long size = sc.getSize();
+		String rangeHeader = req.getHeader("Range");
+		if(rangeHeader == null || size < 0 || !HttpValidators.isIfRangeSatisfied(req.getHeader("If-Range"), etag, lastModified))
+			return null;
+		List<ByteRange> ranges = ByteRange.parse(rangeHeader, size);
+		if(ranges == null)
+			return null;
+		IOUtils.closeQuietly(sc.getInputStream());
+		logger.debug("* partial content -> backendPath: {}, range: {}", fullPath, rangeHeader);
+		List<InputStream> parts = new ArrayList<>(ranges.size());
+		Path file = null;
+		try {
+			for(ByteRange range : ranges) {
+				StreamContent part = connector.download(fullPath, range.getStart(), range.getLength());
+				parts.add(part.getInputStream());
+				file = part.getFile();
+			}
+		} catch (C5CException | RuntimeException e) {
+			for(InputStream in : parts)
+				IOUtils.closeQuietly(in);
+			throw e;
+		}
+		return new PartialContent(mode, fullPath, size, etag, lastModified, ranges, parts, file);
 	}
 
-	private ShowThumbnail buildThumbnailView(String fullPath) throws C5CException {
+	/**
+	 * Builds the thumbnail, if the client hasn't the current one already. It's checked by the attributes of the file,
+	 * so the thumbnail isn't built or read from the cache for a 304.
+	 */
+	private GenericResponse buildThumbnailView(String fullPath, HttpServletRequest req) throws C5CException {
 		Dimension dim = UserObjectProxy.getThumbnailDimension();
-		// TODO calling the cache, see issue#27
+		GenericConnector.FileProperties fp = connector.getInfo(fullPath, false);
+		String etag = buildETag(fp, buildVariant('t', dim));
+		long lastModified = getLastModified(fp);
+		if(isNotModified(req, etag, lastModified))
+			return new NotModified(FilemanagerAction.THUMBNAIL, etag, lastModified);
 		StreamContent sc = connector.buildThumbnail(fullPath, dim);
-		return new ShowThumbnail(fullPath, sc.getSize(), sc.getInputStream());
+		return new ShowThumbnail(fullPath, sc.getSize(), sc.getInputStream(), etag, lastModified);
 	}
 	
-	private Prieview buildPrieview(String fullPath, StreamContent sc) {
-		return new Prieview(fullPath, sc.getSize(), sc.getInputStream());
+	private Prieview buildPrieview(String fullPath, StreamContent sc, String etag, long lastModified) {
+		return new Prieview(fullPath, sc.getSize(), sc.getInputStream(), sc.getFile(), etag, lastModified);
+	}
+
+	/**
+	 * Builds the entity tag of a file or of a content derived from it by its attributes.
+	 * 
+	 * @return the entity tag, or <code>null</code> if it's a folder or its size or last-modified time is unknown
+	 */
+	private String buildETag(GenericConnector.FileProperties fp, String variant) {
+		if(fp.isDir() || fp.getSize() == null || fp.getRawModified() == null)
+			return null;
+		return HttpValidators.buildETag(fp.getSize(), fp.getRawModified().getTime(), variant);
+	}
+
+	/**
+	 * Builds the variant of the entity tag of a derived image. It contains the dimension and the settings of the
+	 * encoding, so the cached images of the clients become invalid, if one of them is changed.
+	 */
+	private String buildVariant(char kind, Dimension dim) {
+		if(dim == null)
+			return String.valueOf(kind);
+		return String.format("%c%dx%d-%s", kind, dim.width, dim.height, derivativeSettings);
+	}
+
+	private long getLastModified(GenericConnector.FileProperties fp) {
+		return (fp.getRawModified() == null) ? 0 : fp.getRawModified().getTime();
+	}
+
+	private boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+		return etag != null
+				&& HttpValidators.isNotModified(req.getHeader("If-None-Match"), req.getHeader("If-Modified-Since"), etag, lastModified);
 	}
 	
 	private void setCapabilities(FileInfo fi, String urlPath) {
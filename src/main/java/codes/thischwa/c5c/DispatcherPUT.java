@@ -34,6 +34,7 @@ import codes.thischwa.c5c.GenericConnector.StreamContent;
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.exception.FilemanagerException.Key;
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.filemanager.Resize;
 import codes.thischwa.c5c.requestcycle.Context;
@@ -43,6 +44,7 @@ import codes.thischwa.c5c.requestcycle.response.mode.Replace;
 import codes.thischwa.c5c.requestcycle.response.mode.SaveFile;
 import codes.thischwa.c5c.requestcycle.response.mode.UploadFile;
 import codes.thischwa.c5c.util.FileUtils;
+import codes.thischwa.c5c.util.PathBuilder;
 import codes.thischwa.c5c.util.StringUtils;
 import codes.thischwa.c5c.util.VirtualFile;
 
@@ -52,15 +54,20 @@ import codes.thischwa.c5c.util.VirtualFile;
  */
 final class DispatcherPUT extends GenericDispatcher {
 	private static Logger logger = LoggerFactory.getLogger(DispatcherPUT.class);
+
+	private ThumbnailPregenerator thumbnailPregenerator;
 	
 	/**
 	 * Instantiates and initializes the connector (object which extends the {@link GenericConnector});
 	 * 
 	 * @param connector
 	 *            the implementation of the {@link Connector} interface
+	 * @param thumbnailPregenerator
+	 *            generates the thumbnails of uploaded and replaced images in the background
 	 */
-	DispatcherPUT(Connector connector ) {
+	DispatcherPUT(Connector connector, ThumbnailPregenerator thumbnailPregenerator) {
 		super(connector);
+		this.thumbnailPregenerator = thumbnailPregenerator;
 	}
 
 	@Override
@@ -104,6 +111,7 @@ final class DispatcherPUT extends GenericDispatcher {
 				imageProcessingAndSizeCheck(tempPath, sanitizedName, uploadPart.getSize(), conf);
 				
 				connector.upload(backendPath, sanitizedName, new BufferedInputStream(Files.newInputStream(tempPath)));
+				pregenerateThumbnail(new PathBuilder(backendPath).addFile(sanitizedName), conf);
 
 				logger.debug("successful uploaded {} bytes", uploadPart.getSize());
 				Files.delete(tempPath);
@@ -140,6 +148,8 @@ final class DispatcherPUT extends GenericDispatcher {
 				imageProcessingAndSizeCheck(tempPath, fileName, uploadPart.getSize(), conf);
 				
 				connector.replace(backendPath, new BufferedInputStream(Files.newInputStream(tempPath)));
+				// the connector has invalidated the old variants, so the thumbnail is built again
+				pregenerateThumbnail(backendPath, conf);
 				logger.debug("successful replaced {} bytes", uploadPart.getSize());
 				VirtualFile vfUrlPath = new VirtualFile(newFilePath, false);
  				return new Replace(vfUrlPath.getFolder(), vfUrlPath.getName());
@@ -156,6 +166,9 @@ final class DispatcherPUT extends GenericDispatcher {
 				throw new C5CException(UserObjectProxy.getFilemanagerErrorMessage(Key.ModeError));
 			}
 			}
+		} catch (ServiceUnavailableException e) {
+			// the status 503 with 'Retry-After' instead of the upload response
+			return ErrorResponseFactory.buildException(e);
 		} catch (C5CException e) {
 			return ErrorResponseFactory.buildErrorResponseForUpload(e.getMessage());
 		} catch (ServletException e) {
@@ -204,6 +217,16 @@ final class DispatcherPUT extends GenericDispatcher {
 		}
 	}
 	
+	/**
+	 * Enqueues the generation of the thumbnail and the preview, if the file is an image and thumbnails are shown.
+	 */
+	private void pregenerateThumbnail(String backendPath, FilemanagerConfig conf) {
+		String ext = FilenameUtils.getExtension(backendPath).toLowerCase();
+		if(!conf.getOptions().isShowThumbs() || !conf.getImages().getExtensions().contains(ext))
+			return;
+		thumbnailPregenerator.enqueue(backendPath);
+	}
+	
 	private Path saveTemp(InputStream in, String name) throws IOException {
 		String baseName = FilenameUtils.getBaseName(name);
 		String ext = FilenameUtils.getExtension(name);
@@ -10,8 +10,13 @@
  */
 package codes.thischwa.c5c;
 
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.exception.FilemanagerException;
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
 import codes.thischwa.c5c.requestcycle.response.mode.UploadFile;
 
@@ -27,11 +32,16 @@ class ErrorResponseFactory {
 	}
 	
 	static GenericResponse buildException(C5CException e) {
+		if(e instanceof ServiceUnavailableException) {
+			GenericResponse r = new ServiceUnavailableResponse(((ServiceUnavailableException) e).getRetryAfter());
+			r.setError(e.getMessage(), GenericResponse.DEFAULT_ERROR_CODE);
+			return r;
+		}
 		if(e instanceof FilemanagerException) {
 			return buildErrorResponse(e.getMessage(), GenericResponse.DEFAULT_ERROR_CODE);
 		}
 		String msg = (e.getMode() == null) ? e.getMessage()
-				: String.format("While executing [{}]: {}", e.getMode().toString(), e.getMessage());
+				: String.format("While executing [%s]: %s", e.getMode().toString(), e.getMessage());
 		return buildErrorResponse(msg, 1000);
 	}
 	
@@ -49,4 +59,23 @@ class ErrorResponseFactory {
 			super(null);
 		}
 	}
+
+	/**
+	 * Error response with the status 503 and the 'Retry-After' header, so the client knows when to retry the request.
+	 */
+	private static class ServiceUnavailableResponse extends GenericResponse {
+		private int retryAfter;
+
+		ServiceUnavailableResponse(int retryAfter) {
+			super(null);
+			this.retryAfter = retryAfter;
+		}
+
+		@Override
+		public void write(HttpServletResponse resp) throws IOException {
+			resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			resp.setHeader("Retry-After", String.valueOf(retryAfter));
+			super.write(resp);
+		}
+	}
 }
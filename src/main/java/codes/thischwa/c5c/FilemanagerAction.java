@@ -31,6 +31,8 @@ public enum FilemanagerAction {
 	REPLACE(FilemanagerAction.CONTENTTYPE_HTML, "replace"),
 
 	DOWNLOAD(null, "download"),
+
+	ZIP(null, "zip"),
 	
 	THUMBNAIL(null, "thumbnail"),
 	
@@ -27,8 +27,8 @@ import org.slf4j.LoggerFactory;
 
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.requestcycle.FilemanagerConfigBuilder;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Filter for serving configuration files of the filemanager.<br/>
@@ -70,9 +70,8 @@ public class FilemanagerConfigFilter implements Filter {
 			FilemanagerConfig config = (path.endsWith(".default.json")) ? UserObjectProxy.getFilemanagerDefaultConfig()
 					: UserObjectProxy.getFilemanagerUserConfig(req);
 
-			ObjectMapper mapper = new ObjectMapper();
 			try {
-				mapper.writeValue(resp.getOutputStream(), config);
+				JacksonRegistry.getWriter(FilemanagerConfig.class).writeValue(resp.getOutputStream(), config);
 			} catch (Exception e) {
 				logger.error(String.format("Handling of '%s' failed.", path), e);
 				throw new RuntimeException(e);
@@ -10,18 +10,27 @@
  */
 package codes.thischwa.c5c;
 
+import java.awt.Dimension;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.Set;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.filemanager.Exclude;
+import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.impl.LocalConnector;
 import codes.thischwa.c5c.requestcycle.BackendPathBuilder;
+import codes.thischwa.c5c.requestcycle.RequestData;
 import codes.thischwa.c5c.requestcycle.response.mode.FileInfoProperties;
 import codes.thischwa.c5c.util.StringUtils;
 
@@ -43,18 +52,32 @@ public abstract class GenericConnector implements Connector {
 
 	private Set<String> imageExtensions;
 
+	private DimensionCache dimensionCache = new DimensionCache(PropertiesLoader.getDimensionCacheSize(), PropertiesLoader.getDimensionCacheFile());
+
+	private ThumbnailCache thumbnailCache = new ThumbnailCache(PropertiesLoader.getThumbnailCacheDir(), PropertiesLoader.getThumbnailCacheSize());
+
+	private ThumbnailCache previewCache = new ThumbnailCache(PropertiesLoader.getPreviewCacheDir(), PropertiesLoader.getPreviewCacheSize());
+
+	private ThumbnailMemoryCache thumbnailMemoryCache = new ThumbnailMemoryCache(PropertiesLoader.getThumbnailMemoryCacheSize());
+
 	/**
 	 * Simple container object to hold data which is needed to stream content via {@link InputStream} e.g. it's needed for the download
-	 * action.
+	 * action. If the content is a local file, its path is known too, so the response could transfer it directly.
 	 */
 	public static class StreamContent {
 
 		private InputStream in;
 		private long size;
+		private Path file;
 
 		StreamContent(InputStream in, long size) {
+			this(in, size, null);
+		}
+
+		StreamContent(InputStream in, long size, Path file) {
 			this.in = in;
 			this.size = size;
+			this.file = file;
 		}
 
 		public InputStream getInputStream() {
@@ -64,6 +87,13 @@ public abstract class GenericConnector implements Connector {
 		public long getSize() {
 			return size;
 		}
+
+		/**
+		 * @return the local file of the content, or <code>null</code> if the content isn't a local file
+		 */
+		public Path getFile() {
+			return file;
+		}
 	}
 
 	/**
@@ -109,8 +139,22 @@ public abstract class GenericConnector implements Connector {
 	 */
 	@Override
 	public void init() throws RuntimeException {
+		dimensionCache.load();
+		thumbnailCache.load();
+		previewCache.load();
 		logger.info("*** {} sucessful initialized.", this.getClass().getName());
 	}
+
+	/**
+	 * Releases the resources of the connector. Can be overridden by the inherited object.
+	 */
+	@Override
+	public void destroy() {
+		dimensionCache.save();
+		thumbnailCache.save();
+		previewCache.save();
+		logger.info("*** {} sucessful destroyed.", this.getClass().getName());
+	}
 	
 	@Override
 	public void setImageExtensions(Set<String> imageExtensions) {
@@ -137,6 +181,24 @@ public abstract class GenericConnector implements Connector {
 
 	@Override
 	public abstract GenericConnector.StreamContent download(String backendPath) throws C5CException;
+
+	/**
+	 * The default implementation skips the stream of {@link #download(String)} up to the offset, so the content is
+	 * read from the beginning of the file. Implementations should overwrite it, if their backend supports positional
+	 * reads.
+	 */
+	@Override
+	public GenericConnector.StreamContent download(String backendPath, long offset, long length) throws C5CException {
+		StreamContent sc = download(backendPath);
+		InputStream in = sc.getInputStream();
+		try {
+			IOUtils.skipFully(in, offset);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw new C5CException(FilemanagerAction.DOWNLOAD, e.getMessage());
+		}
+		return new GenericConnector.StreamContent(new BoundedInputStream(in, length), length, null);
+	}
 	
 	@Override
 	public abstract String editFile(String backendPath) throws C5CException;
@@ -149,7 +211,7 @@ public abstract class GenericConnector implements Connector {
 	 * @return <code>true</code> if the name of the file is valid, otherwise <code>false</code>
 	 */
 	protected boolean checkFilename(String name) {
-		Exclude exclude = UserObjectProxy.getFilemanagerConfig().getExclude();
+		Exclude exclude = getExclude();
 		Set<String> disAllowedFiles = exclude.getDisallowedFiles();
 		return (disAllowedFiles.contains(name)) ? false : UserObjectProxy.isFileNameAllowed(name);
 	}
@@ -162,10 +224,50 @@ public abstract class GenericConnector implements Connector {
 	 * @return <code>true</code> if the name of the directory is valid, otherwise <code>false</code>
 	 */
 	protected boolean checkFolderName(String name) {
-		Exclude exclude = UserObjectProxy.getFilemanagerConfig().getExclude();
+		Exclude exclude = getExclude();
 		Set<String> disAllowedDirs = exclude.getDisallowedDirs();
 		return (disAllowedDirs.contains(name)) ? false : UserObjectProxy.isFolderNameAllowed(name);
 	}
+
+	/**
+	 * Gets the excluded names of the configuration of the current request. Outside of a request, e.g. in the
+	 * background threads of the {@link ThumbnailWarmUp}, the default configuration is used.
+	 */
+	private static Exclude getExclude() {
+		FilemanagerConfig conf = (RequestData.getContext() != null) ? UserObjectProxy.getFilemanagerConfig()
+				: UserObjectProxy.getFilemanagerDefaultConfig();
+		return conf.getExclude();
+	}
+
+	/**
+	 * Resolves the identity of a folder. The walks through the folders, e.g. of the {@link ThumbnailWarmUp} and the
+	 * {@link ZipArchiver}, visit each identity only once, so a loop, e.g. a symbolic link to a parent folder, doesn't
+	 * make them endless. The default is the backend path without a trailing separator.
+	 * 
+	 * @param backendPath
+	 *            the backend path of the folder
+	 * @return the identity of the folder
+	 */
+	protected String resolveFolderIdentity(String backendPath) {
+		String path = backendPath;
+		while(path.length() > 1 && path.endsWith(Constants.defaultSeparator))
+			path = path.substring(0, path.length() - 1);
+		return path;
+	}
+
+	/**
+	 * Checks whether the thumbnail of an image is cached, so building it is cheap. The {@link ThumbnailWarmUp}
+	 * throttles only the thumbnails, which aren't cached. The default is <code>false</code>.
+	 * 
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param dim
+	 *            the dimension of the thumbnail
+	 * @return <code>true</code> if the thumbnail is cached
+	 */
+	protected boolean isThumbnailCached(String backendPath, Dimension dim) {
+		return false;
+	}
 	
 	/**
 	 * Builds the {@link FileInfoProperties} which holds the basic properties of a representation of a image of the filemanager.
@@ -233,6 +335,102 @@ public abstract class GenericConnector implements Connector {
 		return new GenericConnector.StreamContent(in, fileSize);
 	}
 
+	/**
+	 * Builds the {@link GenericConnector.StreamContent} of a local file. The file is opened by a
+	 * {@link FileInputStream}, so the response could transfer it by its channel or by the sendfile support of the
+	 * container.
+	 * 
+	 * @param file
+	 *            the local file to download
+	 * @return The initialized {@link GenericConnector.StreamContent}.
+	 * @throws IOException
+	 *             if the file couldn't be opened
+	 */
+	protected GenericConnector.StreamContent buildStreamContent(Path file) throws IOException {
+		return buildStreamContent(file, 0, -1);
+	}
+
+	/**
+	 * Builds the {@link GenericConnector.StreamContent} of a range of a local file. The file is opened by a
+	 * {@link FileInputStream}, which is positioned at the offset, so the bytes before it aren't read.
+	 * 
+	 * @param file
+	 *            the local file to download
+	 * @param offset
+	 *            the position of the first byte of the range
+	 * @param length
+	 *            the length of the range, if it is less than 0 the range ends at the end of the file
+	 * @return The initialized {@link GenericConnector.StreamContent}.
+	 * @throws IOException
+	 *             if the file couldn't be opened
+	 */
+	protected GenericConnector.StreamContent buildStreamContent(Path file, long offset, long length) throws IOException {
+		FileInputStream in = new FileInputStream(file.toFile());
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			long start = Math.min(Math.max(offset, 0), size);
+			channel.position(start);
+			long rangeLength = (length < 0) ? size - start : Math.min(length, size - start);
+			return new GenericConnector.StreamContent(in, rangeLength, file);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw e;
+		}
+	}
+
+	/**
+	 * Getter for the {@link DimensionCache} of this connector.
+	 * 
+	 * @return the {@link DimensionCache}
+	 */
+	protected DimensionCache getDimensionCache() {
+		return dimensionCache;
+	}
+
+	/**
+	 * Getter for the {@link ThumbnailCache} of this connector.
+	 * 
+	 * @return the {@link ThumbnailCache}
+	 */
+	protected ThumbnailCache getThumbnailCache() {
+		return thumbnailCache;
+	}
+
+	/**
+	 * Getter for the cache of the scaled previews of this connector. It's a {@link ThumbnailCache} with its own
+	 * directory and size.
+	 * 
+	 * @return the {@link ThumbnailCache} of the previews
+	 */
+	protected ThumbnailCache getPreviewCache() {
+		return previewCache;
+	}
+
+	/**
+	 * Getter for the {@link ThumbnailMemoryCache} of this connector.
+	 * 
+	 * @return the {@link ThumbnailMemoryCache}
+	 */
+	protected ThumbnailMemoryCache getThumbnailMemoryCache() {
+		return thumbnailMemoryCache;
+	}
+
+	/**
+	 * Removes the entries of the desired backend path from all caches of this connector. It should be called if a file
+	 * or folder is changed. The caches must be fed with the same kind of path, e.g. the
+	 * {@link codes.thischwa.c5c.impl.LocalConnector} uses the real path in the file system for both.
+	 * 
+	 * @param backendPath
+	 *            the backend path of a file or folder, not the url path of the filemanager
+	 */
+	protected void invalidateCaches(String backendPath) {
+		dimensionCache.invalidate(backendPath);
+		thumbnailCache.invalidate(backendPath);
+		previewCache.invalidate(backendPath);
+		thumbnailMemoryCache.invalidate(backendPath);
+	}
+
 	protected boolean isImageExtension(String ext) {
 		if(StringUtils.isNullOrEmpty(ext) || imageExtensions == null)
 			return false;
@@ -11,9 +11,11 @@
 package codes.thischwa.c5c;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import codes.thischwa.c5c.GenericConnector.FileProperties;
 import codes.thischwa.c5c.filemanager.Options;
@@ -47,35 +49,52 @@ abstract class GenericDispatcher {
 	protected void sortFileProperties(List<FileProperties> fps, Options.FILE_SORTING sorting) {
 		if(fps == null || fps.isEmpty())
 			return;
-		
-		if(sorting == FILE_SORTING.DEFAULT || sorting == FILE_SORTING.TYPE_ASC || sorting == FILE_SORTING.TYPE_DESC) {
-			List<FileProperties> dirs = new ArrayList<>();
-			List<FileProperties> files = new ArrayList<>();
+		Collections.sort(fps, new FilePropertiesComparator(sorting));
+	}
+
+	/**
+	 * Selects a page of the sorted files and folders, see {@link #sortFileProperties(List, FILE_SORTING)}. If a limit is
+	 * set, just the first 'offset + limit' entries are sorted by a bounded heap instead of sorting all entries.
+	 * 
+	 * @param fps
+	 *            the files and folders
+	 * @param sorting
+	 *            the sorting
+	 * @param offset
+	 *            the number of entries to skip
+	 * @param limit
+	 *            the max. number of entries to select, 0 selects all
+	 * @return the sorted page of the files and folders
+	 */
+	protected List<FileProperties> selectFileProperties(Collection<FileProperties> fps, Options.FILE_SORTING sorting, int offset, int limit) {
+		if(fps == null || offset >= fps.size())
+			return new ArrayList<>();
+		Comparator<FileProperties> comparator = new FilePropertiesComparator(sorting);
+		int count = (limit <= 0) ? fps.size() : (int) Math.min((long) offset + limit, fps.size());
+		List<FileProperties> selected;
+		if(count == fps.size()) {
+			selected = new ArrayList<>(fps);
+		} else {
+			// the heap holds the 'count' smallest entries, its head is the greatest of them
+			PriorityQueue<FileProperties> heap = new PriorityQueue<>(count + 1, Collections.reverseOrder(comparator));
 			for(FileProperties fp : fps) {
-				if(fp.isDir())
-					dirs.add(fp);
-				else 
-					files.add(fp);
+				if(heap.size() < count) {
+					heap.add(fp);
+				} else if(comparator.compare(fp, heap.peek()) < 0) {
+					heap.poll();
+					heap.add(fp);
+				}
 			}
-			// sorting files and dirs descending
-			Collections.sort(dirs, new FilePropertiesComparator(FILE_SORTING.NAME_DESC));
-			Collections.sort(files, new FilePropertiesComparator(FILE_SORTING.NAME_DESC));
-			fps.clear();
-			
-			if(sorting == FILE_SORTING.DEFAULT || sorting == FILE_SORTING.TYPE_DESC) {
-				fps.addAll(files);
-				fps.addAll(dirs);
-			} else {
-				fps.addAll(dirs);
-				fps.addAll(files);
-			}			
-		} else {
-			Collections.sort(fps, new FilePropertiesComparator(sorting));
+			selected = new ArrayList<>(heap);
 		}
+		Collections.sort(selected, comparator);
+		return (offset == 0) ? selected : new ArrayList<>(selected.subList(offset, selected.size()));
 	}
 	
 	/**
-	 * {@link Comparator} for files and folders.
+	 * {@link Comparator} for files and folders. For the type sortings, the folders and files are grouped and each group is
+	 * sorted by name. Ties are broken by the case-sensitive name, so the order doesn't depend on the order in which the
+	 * connector delivers the entries.
 	 */
 	private static class FilePropertiesComparator implements Comparator<FileProperties> {
 		private Options.FILE_SORTING fileSorting;
@@ -86,18 +105,40 @@ abstract class GenericDispatcher {
 
 		@Override
 		public int compare(FileProperties fp1, FileProperties fp2) {
+			int result;
 			switch(fileSorting) {
 			case MODIFIED_ASC:
-				return fp2.getRawModified().compareTo(fp1.getRawModified());
+				result = fp2.getRawModified().compareTo(fp1.getRawModified());
+				break;
 			case MODIFIED_DESC:
-				return fp1.getRawModified().compareTo(fp2.getRawModified());
+				result = fp1.getRawModified().compareTo(fp2.getRawModified());
+				break;
 			case NAME_ASC:
-				return fp2.getName().compareToIgnoreCase(fp1.getName());
-			case NAME_DESC:
+				result = fp2.getName().compareToIgnoreCase(fp1.getName());
+				break;
+			case TYPE_ASC:
+				// folders first
+				result = compareType(fp2, fp1);
+				if(result == 0)
+					result = fp1.getName().compareToIgnoreCase(fp2.getName());
+				break;
 			case DEFAULT:
+			case TYPE_DESC:
+				// files first
+				result = compareType(fp1, fp2);
+				if(result == 0)
+					result = fp1.getName().compareToIgnoreCase(fp2.getName());
+				break;
+			case NAME_DESC:
 			default:
-				return fp1.getName().compareToIgnoreCase(fp2.getName());
+				result = fp1.getName().compareToIgnoreCase(fp2.getName());
+				break;
 			}
+			return (result != 0) ? result : fp1.getName().compareTo(fp2.getName());
+		}
+
+		private static int compareType(FileProperties fp1, FileProperties fp2) {
+			return (fp1.isDir() == fp2.isDir()) ? 0 : (fp1.isDir() ? 1 : -1);
 		}
 	}
 }
@@ -0,0 +1,215 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
+import codes.thischwa.c5c.util.MBeanUtils;
+
+/**
+ * Admission control for the decoding and scaling of images. Each job has to acquire the estimated memory it needs,
+ * before it decodes the image. If the memory budget is exhausted, the job is queued until enough memory is released
+ * or the timeout is reached. If the queue is full too, the job is rejected at once. A rejected job gets a
+ * {@link ServiceUnavailableException}, so the client could retry it later.<br/>
+ * <br/>
+ * The metrics are exposed via JMX, see {@link ImageProcessingSchedulerMBean}.
+ */
+public class ImageProcessingScheduler implements ImageProcessingSchedulerMBean {
+	private static final Logger logger = LoggerFactory.getLogger(ImageProcessingScheduler.class);
+
+	private static final String objectName = "codes.thischwa.c5c:type=ImageProcessingScheduler";
+
+	/** The bytes per pixel of a decoded image, most of them are ARGB or RGB. */
+	private static final int bytesPerPixel = 4;
+
+	private final long budget;
+
+	private final int maxQueued;
+
+	private final long timeoutMillis;
+
+	private long usedBytes = 0;
+
+	private int running = 0;
+
+	private int queued = 0;
+
+	private long admitted = 0;
+
+	private long rejected = 0;
+
+	/**
+	 * Instantiates a new image processing scheduler.
+	 *
+	 * @param budget
+	 *            the memory budget in bytes, if it is less than 1 the admission control is disabled
+	 * @param maxQueued
+	 *            the max. number of the waiting jobs
+	 * @param timeoutMillis
+	 *            the max. time in milliseconds a job waits for its admission
+	 */
+	public ImageProcessingScheduler(long budget, int maxQueued, long timeoutMillis) {
+		this.budget = budget;
+		this.maxQueued = maxQueued;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Estimates the memory which is needed to decode and scale an image.
+	 *
+	 * @param decoded
+	 *            the dimension of the decoded image, it's smaller than the original if the image is subsampled
+	 * @param target
+	 *            the target dimension
+	 * @return the estimated memory in bytes
+	 */
+	public static long estimateCost(Dimension decoded, Dimension target) {
+		// the decoded image and the intermediate images of the scaling are held at the same time
+		long decodedBytes = (long) decoded.width * decoded.height * bytesPerPixel;
+		long targetBytes = (long) target.width * target.height * bytesPerPixel;
+		return 2 * decodedBytes + targetBytes;
+	}
+
+	/**
+	 * Acquires the memory for a job. The returned {@link Permit} must be released after the job has finished.
+	 *
+	 * @param cost
+	 *            the estimated memory of the job in bytes, a job which is larger than the budget is admitted only if
+	 *            no other job is running
+	 * @param action
+	 *            the action for the exception
+	 * @return the permit of the job
+	 * @throws ServiceUnavailableException
+	 *             if the job is rejected, because the queue is full or the timeout is reached
+	 */
+	public Permit acquire(long cost, FilemanagerAction action) throws ServiceUnavailableException {
+		if(budget <= 0)
+			return new Permit(0);
+		long bytes = Math.min(Math.max(cost, 0), budget);
+		synchronized (this) {
+			if(queued == 0 && fits(bytes))
+				return admit(bytes);
+			if(queued >= maxQueued)
+				throw reject(action, "the queue is full");
+			queued++;
+			try {
+				long deadline = System.currentTimeMillis() + timeoutMillis;
+				long remaining = timeoutMillis;
+				while(!fits(bytes)) {
+					if(remaining <= 0)
+						throw reject(action, "the timeout is reached");
+					wait(remaining);
+					remaining = deadline - System.currentTimeMillis();
+				}
+				return admit(bytes);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw reject(action, "interrupted");
+			} finally {
+				queued--;
+			}
+		}
+	}
+
+	private boolean fits(long bytes) {
+		return usedBytes + bytes <= budget;
+	}
+
+	private Permit admit(long bytes) {
+		usedBytes += bytes;
+		running++;
+		admitted++;
+		return new Permit(bytes);
+	}
+
+	private ServiceUnavailableException reject(FilemanagerAction action, String reason) {
+		rejected++;
+		logger.warn("Image processing rejected, {}: {} of {} bytes used, {} jobs queued", reason, usedBytes, budget, queued);
+		int retryAfter = (int) Math.max(1, timeoutMillis / 1000);
+		return new ServiceUnavailableException(action, "The image processing is overloaded, please try again later.", retryAfter);
+	}
+
+	private synchronized void release(long bytes) {
+		usedBytes -= bytes;
+		running--;
+		notifyAll();
+	}
+
+	/**
+	 * Registers the metrics of this scheduler at the platform MBean server. Errors are logged only.
+	 */
+	public void registerMBean() {
+		MBeanUtils.register(this, objectName);
+	}
+
+	/**
+	 * Unregisters the metrics of this scheduler from the platform MBean server. Errors are logged only.
+	 */
+	public void unregisterMBean() {
+		MBeanUtils.unregister(objectName);
+	}
+
+	@Override
+	public long getBudget() {
+		return budget;
+	}
+
+	@Override
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	@Override
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	@Override
+	public synchronized int getQueueDepth() {
+		return queued;
+	}
+
+	@Override
+	public synchronized long getAdmittedCount() {
+		return admitted;
+	}
+
+	@Override
+	public synchronized long getRejectedCount() {
+		return rejected;
+	}
+
+	/**
+	 * The admission of a job, it holds the acquired memory until it's released.
+	 */
+	public final class Permit {
+		private long bytes;
+
+		private Permit(long bytes) {
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Releases the acquired memory. Further calls have no effect.
+		 */
+		public void release() {
+			if(bytes < 0)
+				return;
+			if(budget > 0)
+				ImageProcessingScheduler.this.release(bytes);
+			bytes = -1;
+		}
+	}
+}
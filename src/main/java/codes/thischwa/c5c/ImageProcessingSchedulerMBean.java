@@ -0,0 +1,47 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+/**
+ * The metrics of the {@link ImageProcessingScheduler}, exposed via JMX.
+ */
+public interface ImageProcessingSchedulerMBean {
+
+	/**
+	 * @return the memory budget in bytes
+	 */
+	public long getBudget();
+
+	/**
+	 * @return the estimated memory of the running jobs in bytes
+	 */
+	public long getUsedBytes();
+
+	/**
+	 * @return the number of the running jobs
+	 */
+	public int getRunning();
+
+	/**
+	 * @return the number of the jobs waiting for admission
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * @return the number of the admitted jobs since the start
+	 */
+	public long getAdmittedCount();
+
+	/**
+	 * @return the number of the rejected jobs since the start
+	 */
+	public long getRejectedCount();
+}
@@ -12,8 +12,14 @@ package codes.thischwa.c5c;
 
 import java.io.BufferedInputStream;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -197,6 +203,307 @@ public class PropertiesLoader {
 		return properties.getProperty("connector.preview.dimension");
 	} 
 
+	/**
+	 * Gets the additional dimensions of the variants, which are derived from an image together with the thumbnail
+	 * and the preview.
+	 *
+	 * @return <code>connector.derivative.dimensions</code> property
+	 */
+	static String getDerivativeDimensions() {
+		return properties.getProperty("connector.derivative.dimensions");
+	}
+
+	/**
+	 * Gets the max. number of entries of the dimension cache.
+	 *
+	 * @return <code>connector.dimensionCache.size</code> property, or 0 if it isn't a valid number
+	 */
+	static int getDimensionCacheSize() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.dimensionCache.size").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the number of threads to construct the file properties of a folder in parallel.
+	 *
+	 * @return <code>connector.folder.parallelism</code> property, or 0 if it isn't a valid number
+	 */
+	public static int getFolderParallelism() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.folder.parallelism").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the max. time to wait for the resizing of an image, which is already done by another request.
+	 *
+	 * @return <code>connector.resize.timeout</code> property in seconds, or 0 if it isn't a valid number
+	 */
+	public static int getResizeTimeout() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.resize.timeout").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns <code>connector.thumbnail.exif</code> property
+	 *
+	 * @return true, if the thumbnails of JPEGs are built from the thumbnail embedded in the EXIF data, if possible
+	 */
+	public static boolean isThumbnailExifEnabled() {
+		return Boolean.valueOf(properties.getProperty("connector.thumbnail.exif"));
+	}
+
+	/**
+	 * Gets the quality of the JPEG encoding of thumbnails and other derived images.
+	 *
+	 * @return <code>connector.thumbnail.jpeg.quality</code> property between 0.0 and 1.0, or -1 if it isn't a valid
+	 *         number, the default of the writer is used then
+	 */
+	public static float getThumbnailJpegQuality() {
+		try {
+			float quality = Float.parseFloat(properties.getProperty("connector.thumbnail.jpeg.quality").trim());
+			return (quality < 0 || quality > 1) ? -1 : quality;
+		} catch(Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns <code>connector.thumbnail.jpeg.progressive</code> property
+	 *
+	 * @return true, if thumbnails and other derived images are encoded as progressive JPEG
+	 */
+	public static boolean isThumbnailJpegProgressive() {
+		return Boolean.valueOf(properties.getProperty("connector.thumbnail.jpeg.progressive"));
+	}
+
+	/**
+	 * Gets the compression level of the PNG encoding of thumbnails and other derived images.
+	 *
+	 * @return <code>connector.thumbnail.png.compression</code> property between 0 and 9, or -1 if it isn't a valid
+	 *         number, the default of the writer is used then
+	 */
+	public static int getThumbnailPngCompression() {
+		try {
+			int level = Integer.parseInt(properties.getProperty("connector.thumbnail.png.compression").trim());
+			return (level < 0 || level > 9) ? -1 : level;
+		} catch(Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Gets the memory budget of the image processing in bytes.
+	 *
+	 * @return <code>connector.imageProcessing.budget</code> property (in MB) converted to bytes, or 0 if it isn't a valid number
+	 */
+	static long getImageProcessingBudget() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.imageProcessing.budget").trim()) * 1024 * 1024;
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the max. number of image processing jobs waiting for their admission.
+	 *
+	 * @return <code>connector.imageProcessing.queueSize</code> property, or 0 if it isn't a valid number
+	 */
+	static int getImageProcessingQueueSize() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.imageProcessing.queueSize").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the max. time an image processing job waits for its admission.
+	 *
+	 * @return <code>connector.imageProcessing.timeout</code> property in seconds, or 0 if it isn't a valid number
+	 */
+	static int getImageProcessingTimeout() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.imageProcessing.timeout").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the number of threads to generate the thumbnails of uploaded images in the background.
+	 *
+	 * @return <code>connector.thumbnail.pregeneration.threads</code> property, or 0 if it isn't a valid number
+	 */
+	static int getThumbnailPregenerationThreads() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.thumbnail.pregeneration.threads").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the max. number of thumbnails waiting for their generation in the background.
+	 *
+	 * @return <code>connector.thumbnail.pregeneration.queueSize</code> property, or 0 if it isn't a valid number
+	 */
+	static int getThumbnailPregenerationQueueSize() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.thumbnail.pregeneration.queueSize").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the backend paths of the folders whose thumbnails are built in the background after the start.
+	 *
+	 * @return <code>connector.thumbnail.warmUp.roots</code> property split by comma, or an empty list if not set
+	 */
+	static List<String> getThumbnailWarmUpRoots() {
+		List<String> roots = new ArrayList<>();
+		String prop = properties.getProperty("connector.thumbnail.warmUp.roots");
+		if(prop == null)
+			return roots;
+		for(String root : prop.split(",")) {
+			if(!root.trim().isEmpty())
+				roots.add(root.trim());
+		}
+		return roots;
+	}
+
+	/**
+	 * Gets the max. number of thumbnails per second built by the warm-up.
+	 *
+	 * @return <code>connector.thumbnail.warmUp.rate</code> property, or 0 if it isn't a valid number
+	 */
+	static int getThumbnailWarmUpRate() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.thumbnail.warmUp.rate").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the extensions of the already compressed files, which aren't compressed again in ZIP downloads.
+	 *
+	 * @return <code>connector.zip.storedExtensions</code> property in lower case, or an empty set if not set
+	 */
+	static Set<String> getZipStoredExtensions() {
+		Set<String> extensions = new HashSet<>();
+		String prop = properties.getProperty("connector.zip.storedExtensions");
+		if(prop == null)
+			return extensions;
+		for(String ext : prop.split(",")) {
+			if(!ext.trim().isEmpty())
+				extensions.add(ext.trim().toLowerCase());
+		}
+		return extensions;
+	}
+
+	/**
+	 * Returns <code>connector.async.enabled</code> property
+	 *
+	 * @return true, if the binary content is written asynchronously
+	 */
+	static boolean isAsyncEnabled() {
+		return Boolean.valueOf(properties.getProperty("connector.async.enabled"));
+	}
+
+	/**
+	 * Gets the max. duration of an asynchronous response in milliseconds.
+	 *
+	 * @return <code>connector.async.timeout</code> property (in seconds) converted to milliseconds, or 0 if it isn't a
+	 *         valid number
+	 */
+	static long getAsyncTimeout() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.async.timeout").trim()) * 1000;
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the index file of the dimension cache.
+	 *
+	 * @return <code>connector.dimensionCache.file</code> property, or null if not set
+	 */
+	static Path getDimensionCacheFile() {
+		String file = properties.getProperty("connector.dimensionCache.file");
+		return (file == null || file.trim().isEmpty()) ? null : Paths.get(file.trim());
+	}
+
+	/**
+	 * Gets the directory of the thumbnail cache.
+	 *
+	 * @return <code>connector.thumbnailCache.dir</code> property, or null if not set
+	 */
+	static Path getThumbnailCacheDir() {
+		String dir = properties.getProperty("connector.thumbnailCache.dir");
+		return (dir == null || dir.trim().isEmpty()) ? null : Paths.get(dir.trim());
+	}
+
+	/**
+	 * Gets the max. size of the thumbnail cache in bytes.
+	 *
+	 * @return <code>connector.thumbnailCache.size</code> property (in MB) converted to bytes, or 0 if it isn't a valid number
+	 */
+	static long getThumbnailCacheSize() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.thumbnailCache.size").trim()) * 1024 * 1024;
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the directory of the preview cache, it's the subdirectory 'previews' of the thumbnail cache.
+	 *
+	 * @return the directory of the preview cache, or null if the directory of the thumbnail cache isn't set
+	 */
+	static Path getPreviewCacheDir() {
+		Path dir = getThumbnailCacheDir();
+		return (dir == null) ? null : dir.resolve("previews");
+	}
+
+	/**
+	 * Gets the max. size of the preview cache in bytes.
+	 *
+	 * @return <code>connector.previewCache.size</code> property (in MB) converted to bytes, or 0 if it isn't a valid number
+	 */
+	static long getPreviewCacheSize() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.previewCache.size").trim()) * 1024 * 1024;
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the memory budget of the in-memory thumbnail cache in bytes.
+	 *
+	 * @return <code>connector.thumbnailMemoryCache.size</code> property (in MB) converted to bytes, or 0 if it isn't a valid number
+	 */
+	static long getThumbnailMemoryCacheSize() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.thumbnailMemoryCache.size").trim()) * 1024 * 1024;
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
 	/**
 	 * Gets the regex to exclude folders by name.
 	 *
@@ -0,0 +1,433 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Disk-backed cache for thumbnails. An entry is keyed by the backend path, the last-modified time and the size of the
+ * image and the dimension of the thumbnail, so a changed image is never served with a stale thumbnail. The thumbnails
+ * are stored as files inside the cache directory, they are written atomically. The cache is bounded by the sum of the
+ * sizes of the thumbnails, the least recently used entries will be evicted.<br/>
+ * The entries are persisted to an index file inside the cache directory, see {@link #load()} and {@link #save()}. Between
+ * two saves each change is appended to a journal, so the entries survive a crash too.<br/>
+ * The scaled previews are cached by a separate instance with its own directory and size.<br/>
+ * <br/>
+ * Implementations of the {@link Connector} should call {@link #invalidate(String)} if a file or folder is changed.
+ * The {@link codes.thischwa.c5c.impl.LocalConnector} does it for all mutating actions.
+ */
+public class ThumbnailCache {
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+	private static final Charset charset = Charset.forName("UTF-8");
+
+	private static final char separator = '\t';
+
+	private static final String indexName = "thumbnails.idx";
+
+	private static final String journalName = "thumbnails.journal";
+
+	private static final String removed = "-";
+
+	private static final String suffix = ".thumb";
+
+	private final Path dir;
+
+	private final long maxBytes;
+
+	private final Map<String, CachedThumbnail> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** The names of the entries by their backend path, it's sorted to find the entries inside a folder. */
+	private final NavigableMap<String, Set<String>> namesByPath = new TreeMap<>();
+
+	private long totalBytes = 0;
+
+	private BufferedWriter journal;
+
+	/**
+	 * Instantiates a new thumbnail cache.
+	 *
+	 * @param dir
+	 *            the directory of the cached thumbnails, if it is <code>null</code> the cache is disabled
+	 * @param maxBytes
+	 *            the max. sum of the sizes of the cached thumbnails in bytes, if it is less than 1 the cache is disabled
+	 */
+	public ThumbnailCache(Path dir, long maxBytes) {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Checks if the cache is enabled.
+	 *
+	 * @return <code>true</code> if the cache is enabled
+	 */
+	public boolean isEnabled() {
+		return dir != null && maxBytes > 0;
+	}
+
+	/**
+	 * Retrieves the file of a cached thumbnail. The caller has to expect that the file is evicted in the meantime.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @param dim
+	 *            the dimension of the thumbnail
+	 * @return the file of the cached thumbnail, or <code>null</code> if there isn't a valid entry
+	 */
+	public Path get(String backendPath, long lastModified, long size, Dimension dim) {
+		if(!isEnabled())
+			return null;
+		String name = buildName(backendPath, lastModified, size, dim);
+		synchronized (entries) {
+			if(entries.get(name) == null)
+				return null;
+		}
+		return dir.resolve(name);
+	}
+
+	/**
+	 * Caches a thumbnail. Errors are logged only, because the cache is optional.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @param dim
+	 *            the dimension of the thumbnail
+	 * @param data
+	 *            the thumbnail
+	 */
+	public void put(String backendPath, long lastModified, long size, Dimension dim, byte[] data) {
+		if(!isEnabled() || data == null || data.length > maxBytes)
+			return;
+		String name = buildName(backendPath, lastModified, size, dim);
+		Path tempFile = null;
+		try {
+			Files.createDirectories(dir);
+			tempFile = Files.createTempFile(dir, name, ".tmp");
+			Files.write(tempFile, data);
+			Files.move(tempFile, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while caching the thumbnail of %s.", backendPath), e);
+			deleteQuietly(tempFile);
+			return;
+		}
+
+		List<String> evicted = new ArrayList<>();
+		synchronized (entries) {
+			CachedThumbnail thumbnail = new CachedThumbnail(backendPath, data.length);
+			addEntry(name, thumbnail);
+			appendToJournal(buildLine(name, thumbnail));
+			long bytes = totalBytes;
+			for(Map.Entry<String, CachedThumbnail> eldest : entries.entrySet()) {
+				if(bytes <= maxBytes)
+					break;
+				if(!eldest.getKey().equals(name)) {
+					bytes -= eldest.getValue().length;
+					evicted.add(eldest.getKey());
+				}
+			}
+			for(String e : evicted)
+				removeEntry(e);
+		}
+		for(String e : evicted)
+			deleteQuietly(dir.resolve(e));
+	}
+
+	/**
+	 * Removes the entries of the desired backend path. If the path is a folder, all entries inside it are removed too.
+	 *
+	 * @param backendPath
+	 *            the backend path of a file or folder
+	 */
+	public void invalidate(String backendPath) {
+		if(!isEnabled() || backendPath == null)
+			return;
+		String path = backendPath;
+		while(path.length() > 1 && (path.endsWith(Constants.defaultSeparator) || path.endsWith(File.separator)))
+			path = path.substring(0, path.length() - 1);
+		String folderPrefix = path.concat(Constants.defaultSeparator);
+		String localFolderPrefix = path.concat(File.separator);
+		List<String> invalid = new ArrayList<>();
+		synchronized (entries) {
+			Set<String> names = namesByPath.get(path);
+			if(names != null)
+				invalid.addAll(names);
+			collectNames(namesByPath.subMap(folderPrefix, true, folderPrefix + Character.MAX_VALUE, false), invalid);
+			if(!localFolderPrefix.equals(folderPrefix))
+				collectNames(namesByPath.subMap(localFolderPrefix, true, localFolderPrefix + Character.MAX_VALUE, false),
+						invalid);
+			for(String name : invalid)
+				removeEntry(name);
+		}
+		for(String name : invalid)
+			deleteQuietly(dir.resolve(name));
+	}
+
+	/**
+	 * Loads the entries of the index file and replays the journal, if they exist. Afterwards the index is saved, so
+	 * the journal is merged into it. Cached thumbnails, which aren't known by the index, are deleted.
+	 */
+	public void load() {
+		if(!isEnabled() || !Files.isDirectory(dir))
+			return;
+		synchronized (entries) {
+			readIndex(dir.resolve(indexName));
+			readIndex(dir.resolve(journalName));
+			List<String> missing = new ArrayList<>();
+			for(String name : entries.keySet())
+				if(!Files.exists(dir.resolve(name)))
+					missing.add(name);
+			for(String name : missing)
+				removeEntry(name, false);
+		}
+
+		// orphans, e.g. of a crash between writing a thumbnail and its journal line, are deleted
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*{" + suffix + ",.tmp}")) {
+			for(Path file : files) {
+				boolean known;
+				synchronized (entries) {
+					known = entries.containsKey(file.getFileName().toString());
+				}
+				if(!known)
+					deleteQuietly(file);
+			}
+		} catch (IOException e) {
+			logger.warn(String.format("Error while cleaning up the thumbnail cache %s.", dir), e);
+		}
+		logger.info("{} entries of the thumbnail index {} loaded.", size(), dir.resolve(indexName));
+		save();
+	}
+
+	/**
+	 * Saves the entries to the index file and deletes the journal. The index is written atomically and the lock is
+	 * held meanwhile, so no change gets lost between the index and the journal. If the journal couldn't be deleted,
+	 * replaying it on the saved index doesn't harm, because it contains only changes made before.
+	 */
+	public void save() {
+		if(!isEnabled())
+			return;
+		Path indexFile = dir.resolve(indexName);
+		Path tempFile = null;
+		synchronized (entries) {
+			try {
+				closeJournal();
+				Files.createDirectories(dir);
+				tempFile = Files.createTempFile(dir, indexName, ".tmp");
+				try (BufferedWriter writer = Files.newBufferedWriter(tempFile, charset)) {
+					for(Map.Entry<String, CachedThumbnail> e : entries.entrySet()) {
+						writer.write(buildLine(e.getKey(), e.getValue()));
+						writer.newLine();
+					}
+				}
+				Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				Files.deleteIfExists(dir.resolve(journalName));
+				logger.info("{} entries of the thumbnail index {} saved.", entries.size(), indexFile);
+			} catch (IOException e) {
+				logger.warn(String.format("Error while saving the thumbnail index %s.", indexFile), e);
+				deleteQuietly(tempFile);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of the cached thumbnails.
+	 *
+	 * @return the number of the cached thumbnails
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the sum of the sizes of the cached thumbnails.
+	 *
+	 * @return the sum of the sizes of the cached thumbnails in bytes
+	 */
+	public long getTotalBytes() {
+		synchronized (entries) {
+			return totalBytes;
+		}
+	}
+
+	/**
+	 * Reads the lines of the index or journal into the entries. A line of a removed entry has a leading '-' instead of
+	 * the length. Must be called while holding the lock.
+	 */
+	private void readIndex(Path file) {
+		if(!Files.exists(file))
+			return;
+		try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] parts = line.split(String.valueOf(separator), 3);
+				if(parts.length == 2 && parts[0].equals(removed)) {
+					removeEntry(parts[1], false);
+					continue;
+				}
+				if(parts.length != 3) {
+					// e.g. the last line of the journal after a crash
+					logger.debug("Ignoring corrupt line of the thumbnail index: {}", line);
+					continue;
+				}
+				try {
+					addEntry(parts[1], new CachedThumbnail(parts[2], Long.parseLong(parts[0])));
+				} catch (NumberFormatException e) {
+					logger.debug("Ignoring corrupt line of the thumbnail index: {}", line);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn(String.format("Error while loading the thumbnail index %s.", file), e);
+		}
+	}
+
+	/**
+	 * Appends a line to the journal, it's flushed immediately, so it survives if the process is killed. Must be called
+	 * while holding the lock, so the order of the lines is the order of the changes.
+	 */
+	private void appendToJournal(String line) {
+		try {
+			if(journal == null) {
+				Files.createDirectories(dir);
+				journal = Files.newBufferedWriter(dir.resolve(journalName), charset, StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND);
+			}
+			journal.write(line);
+			journal.newLine();
+			journal.flush();
+		} catch (IOException e) {
+			logger.warn(String.format("Error while writing the thumbnail journal of %s.", dir), e);
+			closeJournal();
+		}
+	}
+
+	private void closeJournal() {
+		if(journal == null)
+			return;
+		try {
+			journal.close();
+		} catch (IOException e) {
+			logger.debug("Couldn't close the thumbnail journal of {}", dir);
+		}
+		journal = null;
+	}
+
+	/** Must be called while holding the lock. */
+	private void addEntry(String name, CachedThumbnail thumbnail) {
+		removeEntry(name, false);
+		entries.put(name, thumbnail);
+		totalBytes += thumbnail.length;
+		Set<String> names = namesByPath.get(thumbnail.backendPath);
+		if(names == null) {
+			names = new HashSet<>();
+			namesByPath.put(thumbnail.backendPath, names);
+		}
+		names.add(name);
+	}
+
+	/** Must be called while holding the lock. */
+	private void removeEntry(String name) {
+		removeEntry(name, true);
+	}
+
+	/** Must be called while holding the lock, the replay of the journal must not append to it. */
+	private void removeEntry(String name, boolean journaled) {
+		CachedThumbnail thumbnail = entries.remove(name);
+		if(thumbnail == null)
+			return;
+		totalBytes -= thumbnail.length;
+		Set<String> names = namesByPath.get(thumbnail.backendPath);
+		if(names != null && names.remove(name) && names.isEmpty())
+			namesByPath.remove(thumbnail.backendPath);
+		if(journaled)
+			appendToJournal(removed + separator + name);
+	}
+
+	private static void collectNames(Map<String, Set<String>> namesByPath, List<String> names) {
+		for(Set<String> n : namesByPath.values())
+			names.addAll(n);
+	}
+
+	private static String buildLine(String name, CachedThumbnail thumbnail) {
+		return String.valueOf(thumbnail.length) + separator + name + separator + thumbnail.backendPath;
+	}
+
+	/**
+	 * Builds the file name of a thumbnail, it's the SHA-1 hash of the key. So arbitrary backend paths can't break out
+	 * of the cache directory.
+	 */
+	private static String buildName(String backendPath, long lastModified, long size, Dimension dim) {
+		String key = String.format("%s%c%d%c%d%c%dx%d", backendPath, separator, lastModified, separator, size, separator,
+				dim.width, dim.height);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder name = new StringBuilder();
+			for(byte b : digest.digest(key.getBytes(charset)))
+				name.append(String.format("%02x", b));
+			return name.append(suffix).toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is required for every java platform
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		if(file == null)
+			return;
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			logger.debug("Couldn't delete {}", file);
+		}
+	}
+
+	private static class CachedThumbnail {
+		private final String backendPath;
+		private final long length;
+
+		CachedThumbnail(String backendPath, long length) {
+			this.backendPath = backendPath;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,435 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory cache for the encoded thumbnails, it's the hot tier in front of the {@link ThumbnailCache}. The bytes are
+ * held off-heap: direct {@link ByteBuffer}s are allocated as slabs on demand, up to the memory budget, and each slab
+ * is split into chunks of fixed size. A thumbnail occupies as many chunks as required.<br/>
+ * <br/>
+ * The admission and eviction follows TinyLFU: the access frequencies are estimated by a small count-min sketch, and
+ * if the memory is exhausted, a new thumbnail is admitted only if it's accessed more frequently than the least
+ * recently used one, which would be evicted for it. So a scan through a large gallery doesn't flush the thumbnails
+ * which are requested again and again.<br/>
+ * <br/>
+ * An entry is keyed like an entry of the {@link ThumbnailCache}. Implementations of the {@link Connector} should call
+ * {@link #invalidate(String)} if a file or folder is changed.
+ */
+public class ThumbnailMemoryCache {
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailMemoryCache.class);
+
+	private static final int chunkSize = 4 * 1024;
+
+	private static final int maxSlabSize = 1024 * 1024;
+
+	private final int slabSize;
+
+	private final int maxSlabs;
+
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+
+	private int[] freeChunks = new int[0];
+
+	private int freeCount = 0;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final FrequencySketch sketch;
+
+	/**
+	 * Instantiates a new thumbnail memory cache.
+	 *
+	 * @param maxBytes
+	 *            the memory budget in bytes, if it is less than the size of a chunk the cache is disabled
+	 */
+	public ThumbnailMemoryCache(long maxBytes) {
+		long budget = Math.max(0, maxBytes) / chunkSize * chunkSize;
+		this.slabSize = (int) Math.min(maxSlabSize, budget);
+		this.maxSlabs = (slabSize == 0) ? 0 : (int) Math.min(Integer.MAX_VALUE / slabSize, budget / slabSize);
+		// about ten counters per cacheable thumbnail
+		this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(16, budget / chunkSize * 10)));
+	}
+
+	/**
+	 * Checks if the cache is enabled.
+	 *
+	 * @return <code>true</code> if the cache is enabled
+	 */
+	public boolean isEnabled() {
+		return maxSlabs > 0;
+	}
+
+	/**
+	 * Retrieves a cached thumbnail. The returned stream must be closed, because the memory of an evicted entry is
+	 * released not before all of its streams are closed.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @param dim
+	 *            the dimension of the thumbnail
+	 * @return the stream of the cached thumbnail, or <code>null</code> if there isn't a valid entry
+	 */
+	public CachedThumbnail get(String backendPath, long lastModified, long size, Dimension dim) {
+		if(!isEnabled())
+			return null;
+		String key = buildKey(backendPath, lastModified, size, dim);
+		synchronized (this) {
+			sketch.increment(key);
+			Entry entry = entries.get(key);
+			if(entry == null)
+				return null;
+			entry.pins++;
+			return new CachedThumbnail(entry);
+		}
+	}
+
+	/**
+	 * Caches a thumbnail, if the admission policy accepts it.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @param dim
+	 *            the dimension of the thumbnail
+	 * @param data
+	 *            the thumbnail
+	 * @return <code>true</code> if the thumbnail is cached
+	 */
+	public boolean put(String backendPath, long lastModified, long size, Dimension dim, byte[] data) {
+		if(!isEnabled() || data == null)
+			return false;
+		int requiredChunks = (data.length + chunkSize - 1) / chunkSize;
+		if(requiredChunks > maxSlabs * (slabSize / chunkSize))
+			return false;
+		String key = buildKey(backendPath, lastModified, size, dim);
+		synchronized (this) {
+			if(entries.containsKey(key))
+				return true;
+			while(freeCount < requiredChunks && slabs.size() < maxSlabs)
+				allocateSlab();
+			if(freeCount < requiredChunks) {
+				// the victims are selected first, so nothing is evicted if the thumbnail is rejected
+				List<Entry> victims = selectVictims(requiredChunks - freeCount);
+				if(victims == null)
+					return false;
+				int candidateFrequency = sketch.frequency(key);
+				for(Entry victim : victims) {
+					if(candidateFrequency <= sketch.frequency(victim.key)) {
+						logger.debug("Thumbnail of {} is rejected by the admission policy.", backendPath);
+						return false;
+					}
+				}
+				for(Entry victim : victims) {
+					entries.remove(victim.key);
+					release(victim);
+				}
+			}
+
+			int[] chunks = new int[requiredChunks];
+			for(int i = 0; i < requiredChunks; i++) {
+				chunks[i] = freeChunks[--freeCount];
+				int offset = i * chunkSize;
+				ByteBuffer chunk = chunk(chunks[i]);
+				chunk.put(data, offset, Math.min(chunkSize, data.length - offset));
+			}
+			entries.put(key, new Entry(key, backendPath, chunks, data.length));
+			return true;
+		}
+	}
+
+	/**
+	 * Removes the entries of the desired backend path. If the path is a folder, all entries inside it are removed too.
+	 *
+	 * @param backendPath
+	 *            the backend path of a file or folder
+	 */
+	public void invalidate(String backendPath) {
+		if(!isEnabled() || backendPath == null)
+			return;
+		String path = backendPath;
+		while(path.length() > 1 && (path.endsWith(Constants.defaultSeparator) || path.endsWith(File.separator)))
+			path = path.substring(0, path.length() - 1);
+		String folderPrefix = path.concat(Constants.defaultSeparator);
+		String localFolderPrefix = path.concat(File.separator);
+		synchronized (this) {
+			Iterator<Entry> iter = entries.values().iterator();
+			while(iter.hasNext()) {
+				Entry entry = iter.next();
+				if(entry.backendPath.equals(path) || entry.backendPath.startsWith(folderPrefix)
+						|| entry.backendPath.startsWith(localFolderPrefix)) {
+					iter.remove();
+					release(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of the cached thumbnails.
+	 *
+	 * @return the number of the cached thumbnails
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the allocated off-heap memory.
+	 *
+	 * @return the allocated off-heap memory in bytes
+	 */
+	public synchronized long getAllocatedBytes() {
+		return (long) slabs.size() * slabSize;
+	}
+
+	/**
+	 * Selects the least recently used entries, which free at least the desired number of chunks. Pinned entries are
+	 * skipped, because their chunks wouldn't be freed before their streams are closed.
+	 *
+	 * @return the victims, or <code>null</code> if there aren't enough of them
+	 */
+	private List<Entry> selectVictims(int chunkCount) {
+		List<Entry> victims = new ArrayList<>();
+		int freed = 0;
+		for(Entry entry : entries.values()) {
+			if(freed >= chunkCount)
+				break;
+			if(entry.pins > 0)
+				continue;
+			victims.add(entry);
+			freed += entry.chunks.length;
+		}
+		return (freed >= chunkCount) ? victims : null;
+	}
+
+	private void allocateSlab() {
+		int first = slabs.size() * (slabSize / chunkSize);
+		slabs.add(ByteBuffer.allocateDirect(slabSize));
+		int count = slabSize / chunkSize;
+		if(freeChunks.length < freeCount + count) {
+			int[] grown = new int[freeCount + count];
+			System.arraycopy(freeChunks, 0, grown, 0, freeCount);
+			freeChunks = grown;
+		}
+		// pushed in reverse order, so the chunks are taken in ascending order
+		for(int i = count - 1; i >= 0; i--)
+			freeChunks[freeCount++] = first + i;
+	}
+
+	/**
+	 * Marks the entry as evicted. Its chunks are freed, if there isn't an open stream.
+	 */
+	private void release(Entry entry) {
+		entry.evicted = true;
+		if(entry.pins == 0)
+			free(entry);
+	}
+
+	private void free(Entry entry) {
+		for(int chunk : entry.chunks)
+			freeChunks[freeCount++] = chunk;
+	}
+
+	private synchronized void unpin(Entry entry) {
+		entry.pins--;
+		if(entry.evicted && entry.pins == 0)
+			free(entry);
+	}
+
+	/**
+	 * Builds an independent view of a chunk, so concurrent readers don't interfere.
+	 */
+	private ByteBuffer chunk(int index) {
+		int chunksPerSlab = slabSize / chunkSize;
+		ByteBuffer slab = slabs.get(index / chunksPerSlab).duplicate();
+		int offset = (index % chunksPerSlab) * chunkSize;
+		slab.limit(offset + chunkSize);
+		slab.position(offset);
+		return slab.slice();
+	}
+
+	private static String buildKey(String backendPath, long lastModified, long size, Dimension dim) {
+		return String.format("%s\t%d\t%d\t%dx%d", backendPath, lastModified, size, dim.width, dim.height);
+	}
+
+	/**
+	 * Stream of a cached thumbnail, it reads directly from the off-heap chunks.
+	 */
+	public final class CachedThumbnail extends InputStream {
+		private final Entry entry;
+		private ByteBuffer current;
+		private int chunkIndex = 0;
+		private int remaining;
+		private boolean closed = false;
+
+		private CachedThumbnail(Entry entry) {
+			this.entry = entry;
+			this.remaining = entry.length;
+		}
+
+		/**
+		 * Returns the length of the thumbnail.
+		 *
+		 * @return the length of the thumbnail in bytes
+		 */
+		public int getLength() {
+			return entry.length;
+		}
+
+		@Override
+		public int read() {
+			if(!nextChunk())
+				return -1;
+			remaining--;
+			return current.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(len == 0)
+				return 0;
+			if(!nextChunk())
+				return -1;
+			int count = Math.min(len, current.remaining());
+			current.get(b, off, count);
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return (closed) ? 0 : remaining;
+		}
+
+		@Override
+		public void close() {
+			if(closed)
+				return;
+			closed = true;
+			current = null;
+			unpin(entry);
+		}
+
+		private boolean nextChunk() {
+			if(closed || remaining == 0)
+				return false;
+			if(current == null || !current.hasRemaining()) {
+				ByteBuffer chunk;
+				synchronized (ThumbnailMemoryCache.this) {
+					chunk = chunk(entry.chunks[chunkIndex++]);
+				}
+				chunk.limit(Math.min(chunkSize, remaining));
+				current = chunk;
+			}
+			return true;
+		}
+	}
+
+	private static class Entry {
+		private final String key;
+		private final String backendPath;
+		private final int[] chunks;
+		private final int length;
+		private int pins = 0;
+		private boolean evicted = false;
+
+		Entry(String key, String backendPath, int[] chunks, int length) {
+			this.key = key;
+			this.backendPath = backendPath;
+			this.chunks = chunks;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Count-min sketch with 4-bit counters to estimate the access frequencies. The counters are halved periodically, so
+	 * the frequencies of the past fade away.
+	 */
+	private static class FrequencySketch {
+		private static final int depth = 4;
+
+		private static final int[] seeds = { 0x97cb3127, 0x2c1b3c6d, 0x297a2d39, 0x5bd1e995 };
+
+		private final byte[] counters;
+
+		private final int mask;
+
+		private final int sampleSize;
+
+		private int additions = 0;
+
+		FrequencySketch(int width) {
+			int w = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+			this.counters = new byte[w * depth];
+			this.mask = w - 1;
+			this.sampleSize = 10 * w;
+		}
+
+		void increment(String key) {
+			int hash = spread(key.hashCode());
+			boolean added = false;
+			for(int i = 0; i < depth; i++) {
+				int index = indexOf(hash, i);
+				if(counters[index] < 15) {
+					counters[index]++;
+					added = true;
+				}
+			}
+			if(added && ++additions >= sampleSize)
+				reset();
+		}
+
+		int frequency(String key) {
+			int hash = spread(key.hashCode());
+			int frequency = Integer.MAX_VALUE;
+			for(int i = 0; i < depth; i++)
+				frequency = Math.min(frequency, counters[indexOf(hash, i)]);
+			return frequency;
+		}
+
+		private int indexOf(int hash, int row) {
+			int h = (hash ^ seeds[row]) * 0x9e3779b9;
+			h ^= h >>> 16;
+			return row * (mask + 1) + (h & mask);
+		}
+
+		private void reset() {
+			for(int i = 0; i < counters.length; i++)
+				counters[i] = (byte) (counters[i] >>> 1);
+			additions /= 2;
+		}
+
+		private static int spread(int hash) {
+			int h = hash * 0x85ebca6b;
+			return h ^ (h >>> 13);
+		}
+	}
+}
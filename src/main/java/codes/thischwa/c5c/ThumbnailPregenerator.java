@@ -0,0 +1,127 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.exception.C5CException;
+
+/**
+ * Generates the thumbnails of uploaded or replaced images in the background, so the caches of the {@link Connector}
+ * are filled before the filemanager requests them. The previews are generated afterwards by the same job, if the
+ * connector caches them, see {@link GenericConnector#getPreviewCache()}. The jobs are processed by a bounded pool of daemon threads, if its
+ * queue is full, further jobs are dropped: the thumbnail is built on request then, as before.
+ */
+final class ThumbnailPregenerator {
+	private static Logger logger = LoggerFactory.getLogger(ThumbnailPregenerator.class);
+
+	private final Connector connector;
+
+	private final Dimension dim;
+
+	private final Dimension previewDim;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Instantiates a new thumbnail pregenerator.
+	 *
+	 * @param connector
+	 *            the connector to build the thumbnails
+	 * @param dim
+	 *            the dimension of the thumbnails, if it is <code>null</code> the pregeneration is disabled
+	 * @param previewDim
+	 *            the max. dimension of the previews, if it is <code>null</code> or if the connector doesn't cache the
+	 *            previews, they aren't pregenerated
+	 * @param threads
+	 *            the number of the worker threads, if it is less than 1 the pregeneration is disabled
+	 * @param queueSize
+	 *            the max. number of the waiting jobs
+	 */
+	ThumbnailPregenerator(Connector connector, Dimension dim, Dimension previewDim, int threads, int queueSize) {
+		this.connector = connector;
+		this.dim = dim;
+		// without a cache the preview would be derived in vain
+		boolean previewCached = connector instanceof GenericConnector
+				&& ((GenericConnector) connector).getPreviewCache().isEnabled();
+		this.previewDim = (previewCached) ? previewDim : null;
+		if(threads < 1 || dim == null) {
+			executor = null;
+			return;
+		}
+		final AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "c5c-thumbnail-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Enqueues the generation of the thumbnail and the preview of an image. It returns at once.
+	 *
+	 * @param backendPath
+	 *            the backend path of the image
+	 */
+	void enqueue(final String backendPath) {
+		if(executor == null)
+			return;
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					StreamContent sc = null;
+					try {
+						sc = connector.buildThumbnail(backendPath, dim);
+						logger.debug("Thumbnail of {} pregenerated.", backendPath);
+						if(previewDim != null) {
+							if(sc != null)
+								IOUtils.closeQuietly(sc.getInputStream());
+							sc = connector.preview(backendPath, previewDim);
+							logger.debug("Preview of {} pregenerated.", backendPath);
+						}
+					} catch (C5CException | RuntimeException e) {
+						logger.info("Thumbnail of {} couldn't be pregenerated: {}", backendPath, e.getMessage());
+					} finally {
+						if(sc != null)
+							IOUtils.closeQuietly(sc.getInputStream());
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			logger.debug("Queue of the thumbnail pregeneration is full, {} is skipped.", backendPath);
+		}
+	}
+
+	/**
+	 * Stops the worker threads, the waiting jobs are discarded.
+	 */
+	void shutdown() {
+		if(executor != null)
+			executor.shutdownNow();
+	}
+}
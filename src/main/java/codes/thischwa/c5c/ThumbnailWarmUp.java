@@ -0,0 +1,291 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.util.MBeanUtils;
+import codes.thischwa.c5c.util.PathBuilder;
+
+/**
+ * Crawler which walks through the configured roots by the {@link Connector} and builds the thumbnails of all images
+ * in the background, so the caches of the connector are warm after a deployment or a wipe of the caches.<br/>
+ * <br/>
+ * The crawler is throttled to the configured number of thumbnails per second and it yields to the interactive
+ * requests: as long as a request is processed or an image processing job is queued, it waits. Thumbnails, which are
+ * cached already, are skipped without throttling. Each folder is crawled only once, so a loop of symbolic links
+ * doesn't make the crawler endless, see {@link GenericConnector#resolveFolderIdentity(String)}. It could be paused and
+ * resumed via JMX, see {@link ThumbnailWarmUpMBean}, which exposes the progress too.
+ */
+public class ThumbnailWarmUp implements ThumbnailWarmUpMBean, Runnable {
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailWarmUp.class);
+
+	private static final String objectName = "codes.thischwa.c5c:type=ThumbnailWarmUp";
+
+	/** The time to wait, if the crawler has to yield to interactive requests. */
+	private static final long yieldMillis = 200;
+
+	private final Connector connector;
+
+	private final Dimension dim;
+
+	private final Set<String> imageExtensions;
+
+	private final List<String> roots;
+
+	private final long intervalMillis;
+
+	private final AtomicInteger activeRequests = new AtomicInteger();
+
+	private final Deque<String> pendingFolders = new ArrayDeque<>();
+
+	/** The identities of the crawled folders, it's used by the crawler thread only. */
+	private final Set<String> visitedFolders = new HashSet<>();
+
+	private volatile Thread thread;
+
+	private volatile boolean paused = false;
+
+	private volatile long folderCount = 0;
+
+	private volatile long thumbnailCount = 0;
+
+	private volatile long failureCount = 0;
+
+	/**
+	 * Instantiates a new thumbnail warm-up.
+	 *
+	 * @param connector
+	 *            the connector to crawl and to build the thumbnails
+	 * @param dim
+	 *            the dimension of the thumbnails, if it is <code>null</code> the warm-up is skipped
+	 * @param imageExtensions
+	 *            the extensions of the images, in lower case
+	 * @param roots
+	 *            the backend paths of the folders to crawl
+	 * @param rate
+	 *            the max. number of thumbnails per second, if it is less than 1 the crawler isn't throttled
+	 */
+	public ThumbnailWarmUp(Connector connector, Dimension dim, Set<String> imageExtensions, List<String> roots, int rate) {
+		this.connector = connector;
+		this.dim = dim;
+		this.imageExtensions = imageExtensions;
+		this.roots = roots;
+		this.intervalMillis = (rate > 0) ? 1000 / rate : 0;
+	}
+
+	/**
+	 * Starts the crawler in a daemon thread and registers it via JMX. Nothing happens, if there isn't a root.
+	 */
+	public void start() {
+		if(roots.isEmpty())
+			return;
+		synchronized (pendingFolders) {
+			pendingFolders.addAll(roots);
+		}
+		registerMBean();
+		thread = new Thread(this, "c5c-thumbnail-warmup");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		logger.info("Thumbnail warm-up started for {}", roots);
+	}
+
+	/**
+	 * Stops the crawler and unregisters it from JMX.
+	 */
+	public void stop() {
+		Thread t = thread;
+		if(t != null) {
+			t.interrupt();
+			thread = null;
+		}
+		unregisterMBean();
+	}
+
+	/**
+	 * Has to be called if an interactive request starts, the crawler yields to it.
+	 */
+	void requestStarted() {
+		activeRequests.incrementAndGet();
+	}
+
+	/**
+	 * Has to be called if an interactive request is finished.
+	 */
+	void requestFinished() {
+		activeRequests.decrementAndGet();
+	}
+
+	@Override
+	public void run() {
+		if(dim == null) {
+			logger.info("Thumbnails are disabled, the warm-up is skipped.");
+			thread = null;
+			return;
+		}
+		try {
+			String folder;
+			while((folder = nextFolder()) != null) {
+				Set<FileProperties> props;
+				try {
+					if(!visitedFolders.add(resolveFolderIdentity(folder)))
+						continue;
+					props = connector.getFolder(folder, false);
+				} catch (C5CException | RuntimeException e) {
+					// a broken folder mustn't stop the crawler
+					logger.info("Folder {} couldn't be crawled: {}", folder, e.getMessage());
+					continue;
+				}
+				folderCount++;
+				for(FileProperties fp : props) {
+					if(fp.isDir()) {
+						addFolder(new PathBuilder(folder).addFolder(fp.getName()).toString());
+					} else if(imageExtensions.contains(FilenameUtils.getExtension(fp.getName()).toLowerCase())) {
+						String backendPath = new PathBuilder(folder).addFile(fp.getName());
+						if(isThumbnailCached(backendPath)) {
+							thumbnailCount++;
+							continue;
+						}
+						awaitTurn();
+						buildThumbnail(backendPath);
+					}
+				}
+			}
+			logger.info("Thumbnail warm-up finished: {} folders, {} thumbnails, {} failures", folderCount, thumbnailCount,
+					failureCount);
+		} catch (InterruptedException e) {
+			logger.info("Thumbnail warm-up stopped.");
+		} finally {
+			thread = null;
+		}
+	}
+
+	private String resolveFolderIdentity(String folder) {
+		return (connector instanceof GenericConnector) ? ((GenericConnector) connector).resolveFolderIdentity(folder)
+				: folder;
+	}
+
+	private boolean isThumbnailCached(String backendPath) {
+		return connector instanceof GenericConnector && ((GenericConnector) connector).isThumbnailCached(backendPath, dim);
+	}
+
+	private void buildThumbnail(String backendPath) {
+		StreamContent sc = null;
+		try {
+			if(connector.isProtected(backendPath))
+				return;
+			sc = connector.buildThumbnail(backendPath, dim);
+			thumbnailCount++;
+		} catch (C5CException | RuntimeException e) {
+			failureCount++;
+			logger.debug("Thumbnail of {} couldn't be built: {}", backendPath, e.getMessage());
+		} finally {
+			if(sc != null)
+				IOUtils.closeQuietly(sc.getInputStream());
+		}
+	}
+
+	/**
+	 * Waits, until the crawler is allowed to build the next thumbnail: it isn't paused, no interactive request is
+	 * processed and the throttling interval is over.
+	 */
+	private void awaitTurn() throws InterruptedException {
+		if(intervalMillis > 0)
+			Thread.sleep(intervalMillis);
+		ImageProcessingScheduler scheduler = UserObjectProxy.getImageProcessingScheduler();
+		while(paused || activeRequests.get() > 0 || scheduler.getQueueDepth() > 0) {
+			if(Thread.currentThread().isInterrupted())
+				throw new InterruptedException();
+			Thread.sleep(yieldMillis);
+		}
+	}
+
+	private String nextFolder() throws InterruptedException {
+		if(Thread.currentThread().isInterrupted())
+			throw new InterruptedException();
+		synchronized (pendingFolders) {
+			return pendingFolders.pollLast();
+		}
+	}
+
+	private void addFolder(String folder) {
+		synchronized (pendingFolders) {
+			pendingFolders.addLast(folder);
+		}
+	}
+
+	private void registerMBean() {
+		MBeanUtils.register(this, objectName);
+	}
+
+	private void unregisterMBean() {
+		MBeanUtils.unregister(objectName);
+	}
+
+	@Override
+	public void pause() {
+		paused = true;
+		logger.info("Thumbnail warm-up paused.");
+	}
+
+	@Override
+	public void resume() {
+		paused = false;
+		logger.info("Thumbnail warm-up resumed.");
+	}
+
+	@Override
+	public boolean isPaused() {
+		return paused;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	@Override
+	public long getFolderCount() {
+		return folderCount;
+	}
+
+	@Override
+	public long getThumbnailCount() {
+		return thumbnailCount;
+	}
+
+	@Override
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	@Override
+	public int getPendingFolderCount() {
+		synchronized (pendingFolders) {
+			return pendingFolders.size();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+/**
+ * The controls and the progress of the {@link ThumbnailWarmUp}, exposed via JMX.
+ */
+public interface ThumbnailWarmUpMBean {
+
+	/**
+	 * Pauses the crawler after the current thumbnail.
+	 */
+	public void pause();
+
+	/**
+	 * Resumes the paused crawler.
+	 */
+	public void resume();
+
+	/**
+	 * @return <code>true</code> if the crawler is paused
+	 */
+	public boolean isPaused();
+
+	/**
+	 * @return <code>true</code> if the crawler hasn't finished yet
+	 */
+	public boolean isRunning();
+
+	/**
+	 * @return the number of the crawled folders
+	 */
+	public long getFolderCount();
+
+	/**
+	 * @return the number of the processed thumbnails
+	 */
+	public long getThumbnailCount();
+
+	/**
+	 * @return the number of the images whose thumbnail couldn't be built
+	 */
+	public long getFailureCount();
+
+	/**
+	 * @return the number of the folders waiting to be crawled
+	 */
+	public int getPendingFolderCount();
+}
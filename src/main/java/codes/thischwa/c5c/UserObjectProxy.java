@@ -18,6 +18,10 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -33,6 +37,7 @@ import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.filemanager.Icons;
 import codes.thischwa.c5c.impl.FilemanagerMessageResolver;
+import codes.thischwa.c5c.impl.HeaderDimensionProvider;
 import codes.thischwa.c5c.requestcycle.BackendPathBuilder;
 import codes.thischwa.c5c.requestcycle.Context;
 import codes.thischwa.c5c.requestcycle.FilemanagerCapability;
@@ -82,12 +87,17 @@ public class UserObjectProxy {
 
 	private static FilemanagerConfigBuilder configBuilder;
 
-	private static IDimensionProvider imageDimensionProvider;
+	private static Class<? extends IDimensionProvider> dimensionProviderClass;
+
+	/** Idle instances of the {@link IDimensionProvider}, they aren't thread-safe. */
+	private static Queue<IDimensionProvider> dimensionProviderPool = new ConcurrentLinkedQueue<>();
 
 	private static Dimension thumbnailDimension;
 
 	private static Dimension previewDimension;
 
+	private static List<Dimension> derivativeDimensions = new ArrayList<>();
+
 	private static Pattern excludeFoldersPattern;
 
 	private static Pattern excludeFilesPattern;
@@ -96,6 +106,10 @@ public class UserObjectProxy {
 	
 	private static FilemanagerConfig filemanagerDefaultConfig;
 
+	private static ImageProcessingScheduler imageProcessingScheduler = new ImageProcessingScheduler(
+			PropertiesLoader.getImageProcessingBudget(), PropertiesLoader.getImageProcessingQueueSize(),
+			PropertiesLoader.getImageProcessingTimeout() * 1000L);
+
 	/**
 	 * Instantiates all user-objects.
 	 *
@@ -180,18 +194,7 @@ public class UserObjectProxy {
 		}
 
 		// try to instantiate the DimensionProvider object
-		className = PropertiesLoader.getDimensionProviderImpl();
-		if(StringUtils.isNullOrEmptyOrBlank(className))
-			throw new RuntimeException("Empty DimensionProvider implementation class name! Depending property must be set!");
-		try {
-			Class<?> clazz = Class.forName(className);
-			imageDimensionProvider = (IDimensionProvider) clazz.newInstance();
-			logger.info("DimensionProvider initialized to {}", className);
-		} catch (Throwable e) {
-			String msg = String.format("DimensionProvider implementation [%s] couldn't be instantiated.", className);
-			logger.error(msg);
-			throw new RuntimeException(msg, e);
-		}
+		initDimensionProvider(PropertiesLoader.getDimensionProviderImpl());
 
 		// try to instantiate the ExifRemover object
 		className = PropertiesLoader.getExifRemoverImpl();
@@ -222,6 +225,20 @@ public class UserObjectProxy {
 			previewDimension = new Dimension(Integer.valueOf(dimMatcher.group(1)), Integer.valueOf(dimMatcher.group(2)));
 		}
 
+		// try to read the dimensions of the additional derivatives
+		List<Dimension> dims = new ArrayList<>();
+		String derivatives = PropertiesLoader.getDerivativeDimensions();
+		if(derivatives != null) {
+			for(String derivative : derivatives.split(",")) {
+				dimMatcher = dimensionPattern.matcher(derivative.trim());
+				if(dimMatcher.matches())
+					dims.add(new Dimension(Integer.valueOf(dimMatcher.group(1)), Integer.valueOf(dimMatcher.group(2))));
+				else if(!derivative.trim().isEmpty())
+					logger.warn("Ignoring the invalid dimension of a derivative: {}", derivative);
+			}
+		}
+		derivativeDimensions = dims;
+
 		// fetch the temporary directory
 		File tempDir = (File) UserObjectProxy.servletContext.getAttribute(ServletContext.TEMPDIR);
 		if(tempDir == null) {
@@ -275,6 +292,29 @@ public class UserObjectProxy {
 		}
 	}
 
+	/**
+	 * Initializes the pool of {@link IDimensionProvider}s. One instance is built to check the implementation.
+	 * 
+	 * @param className
+	 *            the name of the {@link IDimensionProvider} implementation
+	 * @throws RuntimeException
+	 *             is thrown, if the implementation couldn't be instantiated
+	 */
+	static void initDimensionProvider(String className) throws RuntimeException {
+		if(StringUtils.isNullOrEmptyOrBlank(className))
+			throw new RuntimeException("Empty DimensionProvider implementation class name! Depending property must be set!");
+		try {
+			dimensionProviderClass = Class.forName(className).asSubclass(IDimensionProvider.class);
+			dimensionProviderPool.clear();
+			dimensionProviderPool.offer(dimensionProviderClass.newInstance());
+			logger.info("DimensionProvider initialized to {}", className);
+		} catch (Throwable e) {
+			String msg = String.format("DimensionProvider implementation [%s] couldn't be instantiated.", className);
+			logger.error(msg);
+			throw new RuntimeException(msg, e);
+		}
+	}
+
 	/**
 	 * Retrieves the url-path of the default-icon for the desired {@link VirtualFile}.
 	 * 
@@ -368,7 +408,9 @@ public class UserObjectProxy {
 	}
 
 	/**
-	 * Retrieves the {@link Dimension} of the image based on the committed 'imageIn'.
+	 * Retrieves the {@link Dimension} of the image based on the committed 'imageIn'.<br/>
+	 * The implementations of the {@link IDimensionProvider} aren't thread-safe, so each call borrows an instance from a
+	 * pool. Hence concurrent calls don't block each other.
 	 *
 	 * @param imageIn
 	 *            the {@link InputStream} of an image
@@ -376,16 +418,57 @@ public class UserObjectProxy {
 	 * @throws IOException
 	 *             if the image data couldn't be analyzed
 	 */
-	public static synchronized Dimension getDimension(final InputStream imageIn) throws IOException {
+	public static Dimension getDimension(final InputStream imageIn) throws IOException {
+		IDimensionProvider dimensionProvider = borrowDimensionProvider();
 		InputStream tmpImageIn = null;
 		try {
 			// we have to use a copy of the inputstream, because same dimensionProviders uses #mark
 			tmpImageIn = new BufferedInputStream(imageIn);
-			imageDimensionProvider.set(tmpImageIn);
-			Dimension dim = imageDimensionProvider.getDimension();
+			dimensionProvider.set(tmpImageIn);
+			Dimension dim = dimensionProvider.getDimension();
 			return dim;
 		} catch (UnsupportedOperationException | ReadException e) {
 			throw new IOException(e);
+		} finally {
+			dimensionProviderPool.offer(dimensionProvider);
+		}
+	}
+
+	/**
+	 * Retrieves the {@link Dimension} of the image file. If the {@link IDimensionProvider} is a {@link HeaderDimensionProvider},
+	 * the file is read directly, otherwise it's just a wrapper method to {@link #getDimension(InputStream)}.
+	 *
+	 * @param imagePath
+	 *            the path of an image file
+	 * @return the {@link Dimension} of an image
+	 * @throws IOException
+	 *             if the image data couldn't be analyzed
+	 */
+	public static Dimension getDimension(final java.nio.file.Path imagePath) throws IOException {
+		if(!HeaderDimensionProvider.class.isAssignableFrom(dimensionProviderClass)) {
+			try (InputStream imageIn = Files.newInputStream(imagePath)) {
+				return getDimension(imageIn);
+			}
+		}
+		HeaderDimensionProvider dimensionProvider = (HeaderDimensionProvider) borrowDimensionProvider();
+		try {
+			dimensionProvider.set(imagePath);
+			return dimensionProvider.getDimension();
+		} catch (ReadException e) {
+			throw new IOException(e);
+		} finally {
+			dimensionProviderPool.offer(dimensionProvider);
+		}
+	}
+
+	private static IDimensionProvider borrowDimensionProvider() throws IOException {
+		IDimensionProvider dimensionProvider = dimensionProviderPool.poll();
+		if(dimensionProvider != null)
+			return dimensionProvider;
+		try {
+			return dimensionProviderClass.newInstance();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new IOException("DimensionProvider couldn't be instantiated.", e);
 		}
 	}
 
@@ -407,6 +490,24 @@ public class UserObjectProxy {
 		return previewDimension;
 	}
 
+	/**
+	 * Getter for the dimensions of the additional derivatives of an image.
+	 * 
+	 * @return the dimensions of the additional derivatives, it's empty if there isn't one
+	 */
+	public static List<Dimension> getDerivativeDimensions() {
+		return derivativeDimensions;
+	}
+
+	/**
+	 * Getter for the scheduler of the image processing.
+	 * 
+	 * @return the image processing scheduler
+	 */
+	public static ImageProcessingScheduler getImageProcessingScheduler() {
+		return imageProcessingScheduler;
+	}
+
 	/**
 	 * Checks if a folder is allowed to display.
 	 * 
@@ -0,0 +1,211 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.requestcycle.response.mode.ZipDownload;
+import codes.thischwa.c5c.util.PathBuilder;
+
+/**
+ * Writes the selected folders and files by the {@link Connector} to a ZIP archive. The folders are walked through
+ * while the archive is written, each file is read by {@link Connector#download(String)} and copied to its entry, so
+ * the memory is constant. Protected files and folders and the excluded names are skipped. Already compressed files
+ * are written without compression, see <code>connector.zip.storedExtensions</code>.<br/>
+ * If selected folders or files have the same name, a number is appended to the name of the later ones, e.g.
+ * 'image (2).jpg'. Each folder is archived only once per selected folder, so a loop of symbolic links doesn't make
+ * the archive endless, see {@link GenericConnector#resolveFolderIdentity(String)}.
+ */
+final class ZipArchiver implements ZipDownload.EntryWriter {
+	private static Logger logger = LoggerFactory.getLogger(ZipArchiver.class);
+
+	private static final int bufferSize = 64 * 1024;
+
+	private static final Set<String> storedExtensions = PropertiesLoader.getZipStoredExtensions();
+
+	private final Connector connector;
+
+	private final List<Root> roots = new ArrayList<>();
+
+	private final Set<String> rootNames = new HashSet<>();
+
+	private final byte[] buffer = new byte[bufferSize];
+
+	/**
+	 * Instantiates a new ZIP archiver.
+	 *
+	 * @param connector
+	 *            the connector to read the folders and files
+	 */
+	ZipArchiver(Connector connector) {
+		this.connector = connector;
+	}
+
+	@Override
+	public void writeEntries(ZipOutputStream zos) throws IOException {
+		for(Root root : roots) {
+			// the entries of the root folder are written without a prefix
+			if(root.fp.isDir())
+				writeFolder(zos, root.backendPath, (root.entryName.isEmpty()) ? "" : root.entryName + "/");
+			else
+				writeFile(zos, root.backendPath, root.entryName, root.fp);
+		}
+	}
+
+	/**
+	 * Walks through a folder and writes all allowed subfolders and files.
+	 */
+	private void writeFolder(ZipOutputStream zos, String backendPath, String entryName) throws IOException {
+		// pairs of the backend path and the entry name
+		Deque<String[]> pending = new ArrayDeque<>();
+		pending.add(new String[] { backendPath, entryName });
+		Set<String> visited = new HashSet<>();
+		visited.add(resolveFolderIdentity(backendPath));
+		String[] folder;
+		while((folder = pending.poll()) != null) {
+			if(!folder[1].isEmpty()) {
+				zos.putNextEntry(new ZipEntry(folder[1]));
+				zos.closeEntry();
+			}
+			Set<FileProperties> props;
+			try {
+				props = connector.getFolder(folder[0], false);
+			} catch (C5CException e) {
+				logger.info("Folder {} couldn't be archived: {}", folder[0], e.getMessage());
+				continue;
+			}
+			for(FileProperties fp : props) {
+				if(fp.isProtected() || !isAllowed(fp))
+					continue;
+				if(fp.isDir()) {
+					String subfolder = new PathBuilder(folder[0]).addFolder(fp.getName()).toString();
+					if(!visited.add(resolveFolderIdentity(subfolder))) {
+						logger.debug("Folder {} is archived already, it's skipped.", subfolder);
+						continue;
+					}
+					pending.add(new String[] { subfolder, folder[1] + fp.getName() + "/" });
+				} else
+					writeFile(zos, new PathBuilder(folder[0]).addFile(fp.getName()), folder[1] + fp.getName(), fp);
+			}
+		}
+	}
+
+	private void writeFile(ZipOutputStream zos, String backendPath, String entryName, FileProperties fp) throws IOException {
+		StreamContent sc;
+		try {
+			sc = connector.download(backendPath);
+		} catch (C5CException e) {
+			// e.g. it's deleted in the meantime
+			logger.info("File {} couldn't be archived: {}", backendPath, e.getMessage());
+			return;
+		}
+		InputStream in = sc.getInputStream();
+		try {
+			ZipEntry entry = new ZipEntry(entryName);
+			if(fp.getRawModified() != null)
+				entry.setTime(fp.getRawModified().getTime());
+			// STORED would need the CRC before the data, so the file is passed through the deflater uncompressed instead
+			boolean alreadyCompressed = storedExtensions.contains(FilenameUtils.getExtension(entryName).toLowerCase());
+			zos.setLevel((alreadyCompressed) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+			zos.putNextEntry(entry);
+			int read;
+			while((read = in.read(buffer)) >= 0)
+				zos.write(buffer, 0, read);
+			zos.closeEntry();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Checks the name like the connector checks the entries of a folder, see
+	 * {@link GenericConnector#checkFilename(String)} and {@link GenericConnector#checkFolderName(String)}.
+	 */
+	private String resolveFolderIdentity(String backendPath) {
+		return (connector instanceof GenericConnector) ? ((GenericConnector) connector).resolveFolderIdentity(backendPath)
+				: backendPath;
+	}
+
+	private boolean isAllowed(FileProperties fp) {
+		if(!(connector instanceof GenericConnector))
+			return true;
+		GenericConnector genericConnector = (GenericConnector) connector;
+		return (fp.isDir()) ? genericConnector.checkFolderName(fp.getName()) : genericConnector.checkFilename(fp.getName());
+	}
+
+	/**
+	 * Checks whether a selected folder or file could be archived.
+	 *
+	 * @param backendPath
+	 *            the backend path of the folder or file
+	 * @param fp
+	 *            its properties
+	 * @return <code>true</code> if it isn't protected and its name isn't excluded
+	 */
+	boolean isArchivable(String backendPath, FileProperties fp) {
+		return !fp.isProtected() && !connector.isProtected(backendPath) && isAllowed(fp);
+	}
+
+	/**
+	 * Adds a selected folder or file to the archive, it has to be checked by {@link #isArchivable(String, FileProperties)}.
+	 *
+	 * @param backendPath
+	 *            the backend path of the folder or file
+	 * @param fp
+	 *            its properties
+	 */
+	void add(String backendPath, FileProperties fp) {
+		roots.add(new Root(backendPath, fp, buildUniqueName(fp)));
+	}
+
+	/**
+	 * Builds the name of a selected folder or file inside of the archive, it mustn't collide with the name of
+	 * another selected one.
+	 */
+	private String buildUniqueName(FileProperties fp) {
+		String name = fp.getName();
+		String baseName = (fp.isDir()) ? name : FilenameUtils.getBaseName(name);
+		String extension = (fp.isDir()) ? "" : FilenameUtils.getExtension(name);
+		for(int i = 2; !rootNames.add(name); i++)
+			name = (extension.isEmpty()) ? String.format("%s (%d)", baseName, i) : String.format("%s (%d).%s", baseName, i, extension);
+		return name;
+	}
+
+	private static class Root {
+		private final String backendPath;
+		private final FileProperties fp;
+		private final String entryName;
+
+		Root(String backendPath, FileProperties fp, String entryName) {
+			this.backendPath = backendPath;
+			this.fp = fp;
+			this.entryName = entryName;
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.exception;
+
+import codes.thischwa.c5c.FilemanagerAction;
+
+/**
+ * Thrown to indicate that a request can't be handled at the moment because of the load, e.g. if the image processing
+ * is overloaded. The client should retry it later.
+ */
+public class ServiceUnavailableException extends C5CException {
+
+	private static final long serialVersionUID = 1L;
+
+	private int retryAfter;
+
+	public ServiceUnavailableException(FilemanagerAction mode, String msg, int retryAfter) {
+		super(mode, msg);
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Gets the seconds after which the client should retry the request.
+	 *
+	 * @return the seconds to wait before retrying
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+}
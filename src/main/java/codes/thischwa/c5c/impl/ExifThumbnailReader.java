@@ -0,0 +1,157 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sanselan.ImageReadException;
+import org.apache.sanselan.Sanselan;
+import org.apache.sanselan.common.IImageMetadata;
+import org.apache.sanselan.formats.jpeg.JpegImageMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.util.MBeanUtils;
+
+/**
+ * Reads the thumbnail, which is embedded in the EXIF data of most JPEGs of cameras. Only the segments in front of the
+ * image data are read, so it's much cheaper than decoding the image. The embedded thumbnail is used only if it isn't
+ * smaller than the desired thumbnail and if its aspect ratio is the same as the one of the image, because some cameras
+ * embed letterboxed thumbnails. Otherwise the caller has to fall back to decoding the whole image.<br/>
+ * <br/>
+ * The number of hits and fallbacks are exposed via JMX, see {@link ExifThumbnailReaderMBean}.
+ */
+public class ExifThumbnailReader implements ExifThumbnailReaderMBean {
+	private static final Logger logger = LoggerFactory.getLogger(ExifThumbnailReader.class);
+
+	private static final String objectName = "codes.thischwa.c5c:type=ExifThumbnailReader";
+
+	/** The max. difference of the aspect ratios of the embedded thumbnail and the image. */
+	private static final double aspectTolerance = 0.05;
+
+	private final List<String> allowed = Arrays.asList("jpg", "jpeg");
+
+	private final boolean enabled;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	/**
+	 * Instantiates a new EXIF thumbnail reader.
+	 *
+	 * @param enabled
+	 *            if <code>false</code> the embedded thumbnails are never used
+	 */
+	public ExifThumbnailReader(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Checks if the embedded thumbnail could be used for an image with the desired extension.
+	 *
+	 * @param ext
+	 *            the extension of the image
+	 * @return <code>true</code> if the reader is enabled and the image is a JPEG
+	 */
+	public boolean isApplicable(String ext) {
+		return enabled && ext != null && allowed.contains(ext.toLowerCase());
+	}
+
+	/**
+	 * Reads the embedded thumbnail of a JPEG.
+	 *
+	 * @param file
+	 *            the JPEG
+	 * @param original
+	 *            the dimension of the JPEG
+	 * @param target
+	 *            the dimension of the desired thumbnail
+	 * @return the embedded thumbnail, or <code>null</code> if it's missing or not suitable, the caller has to fall back
+	 *         to decoding the whole image then
+	 */
+	public BufferedImage read(Path file, Dimension original, Dimension target) {
+		BufferedImage thumbnail = null;
+		try {
+			IImageMetadata metadata = Sanselan.getMetadata(file.toFile());
+			if(metadata instanceof JpegImageMetadata)
+				thumbnail = ((JpegImageMetadata) metadata).getEXIFThumbnail();
+		} catch (ImageReadException | IOException | RuntimeException e) {
+			logger.debug("The embedded thumbnail of {} couldn't be read: {}", file, e.getMessage());
+		}
+		if(thumbnail != null && isSuitable(new Dimension(thumbnail.getWidth(), thumbnail.getHeight()), original, target)) {
+			hits.incrementAndGet();
+			return thumbnail;
+		}
+		if(thumbnail != null)
+			thumbnail.flush();
+		fallbacks.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Checks if an embedded thumbnail could be scaled to the target dimension: it has the same aspect ratio as the
+	 * image, and it isn't upscaled on the side which is respected by the scaling.
+	 *
+	 * @param embedded
+	 *            the dimension of the embedded thumbnail
+	 * @param original
+	 *            the dimension of the image
+	 * @param target
+	 *            the dimension of the desired thumbnail
+	 * @return <code>true</code> if the embedded thumbnail is suitable
+	 */
+	static boolean isSuitable(Dimension embedded, Dimension original, Dimension target) {
+		if(embedded.width <= 0 || embedded.height <= 0 || original.width <= 0 || original.height <= 0)
+			return false;
+		double embeddedRatio = (double) embedded.width / embedded.height;
+		double originalRatio = (double) original.width / original.height;
+		if(Math.abs(embeddedRatio - originalRatio) > aspectTolerance * originalRatio)
+			return false;
+		boolean landscape = original.width >= original.height;
+		return (landscape) ? embedded.width >= target.width : embedded.height >= target.height;
+	}
+
+	/**
+	 * Registers the metrics of this reader at the platform MBean server. Errors are logged only.
+	 */
+	public void registerMBean() {
+		MBeanUtils.register(this, objectName);
+	}
+
+	/**
+	 * Unregisters the metrics of this reader from the platform MBean server. Errors are logged only.
+	 */
+	public void unregisterMBean() {
+		MBeanUtils.unregister(objectName);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	@Override
+	public long getFallbackCount() {
+		return fallbacks.get();
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+/**
+ * The metrics of the {@link ExifThumbnailReader}, exposed via JMX.
+ */
+public interface ExifThumbnailReaderMBean {
+
+	/**
+	 * @return <code>true</code> if the embedded thumbnails are used
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * @return the number of the thumbnails built from the embedded thumbnail since the start
+	 */
+	public long getHitCount();
+
+	/**
+	 * @return the number of the JPEG thumbnails which fell back to the decoding of the whole image since the start
+	 */
+	public long getFallbackCount();
+}
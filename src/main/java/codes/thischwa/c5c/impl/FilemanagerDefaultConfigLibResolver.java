@@ -16,10 +16,9 @@ import javax.servlet.ServletContext;
 
 import org.apache.commons.io.IOUtils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import codes.thischwa.c5c.DefaultConfigResolver;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
 /**
  * This is the default implementation of {@link DefaultConfigResolver} reads the default configuration file
@@ -41,8 +40,7 @@ public class FilemanagerDefaultConfigLibResolver implements DefaultConfigResolve
 		try {
 			// load the object
 			configIn = getClass().getResourceAsStream(configFile);
-			ObjectMapper mapper = new ObjectMapper();
-			FilemanagerConfig filemanagerDefaultConfig = mapper.readValue(configIn, FilemanagerConfig.class);
+			FilemanagerConfig filemanagerDefaultConfig = JacksonRegistry.getReader(FilemanagerConfig.class).readValue(configIn);
 			return filemanagerDefaultConfig;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -23,8 +23,8 @@ import codes.thischwa.c5c.DefaultConfigResolver;
 import codes.thischwa.c5c.PropertiesLoader;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.requestcycle.FilemanagerConfigBuilder;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * This implementation of {@link DefaultConfigResolver} works like the default implementation {@link FilemanagerDefaultConfigLibResolver},
@@ -51,8 +51,7 @@ public class FilemanagerDefaultConfigResolver implements DefaultConfigResolver {
 		try {
 			// load the object
 			configIn = new BufferedInputStream(new FileInputStream(defaultConfig));
-			ObjectMapper mapper = new ObjectMapper();
-			FilemanagerConfig filemanagerDefaultConfig = mapper.readValue(configIn, FilemanagerConfig.class);
+			FilemanagerConfig filemanagerDefaultConfig = JacksonRegistry.getReader(FilemanagerConfig.class).readValue(configIn);
 			return filemanagerDefaultConfig;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
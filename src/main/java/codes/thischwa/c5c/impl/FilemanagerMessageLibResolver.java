@@ -23,11 +23,12 @@ import org.apache.commons.io.Charsets;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import codes.thischwa.c5c.MessageResolver;
 import codes.thischwa.c5c.PropertiesLoader;
 import codes.thischwa.c5c.util.PathBuilder;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
 /**
  * This is the default implementation of the {@link MessageResolver},
@@ -48,7 +49,7 @@ public class FilemanagerMessageLibResolver extends AbstractFilemanagerMessageRes
 	@Override
 	public void setServletContext(ServletContext servletContext) throws RuntimeException {
 		super.setServletContext(servletContext);
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectReader reader = JacksonRegistry.getReader(Map.class);
 		InputStream inLang = null;
 		try {
 			inLang = FilemanagerMessageLibResolver.class.getResourceAsStream(langPath);
@@ -63,7 +64,7 @@ public class FilemanagerMessageLibResolver extends AbstractFilemanagerMessageRes
 				InputStream in = FilemanagerMessageLibResolver.class.getResourceAsStream(res);
 			  
 		        @SuppressWarnings("unchecked")
-				Map<String, String> langData = mapper.readValue(in, Map.class);
+				Map<String, String> langData = reader.readValue(in);
 				collectLangData(lang, langData);
 			}
 		} catch (IOException e) {
@@ -18,11 +18,12 @@ import javax.servlet.ServletContext;
 
 import org.apache.commons.io.FilenameUtils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import codes.thischwa.c5c.MessageResolver;
 import codes.thischwa.c5c.PropertiesLoader;
 import codes.thischwa.c5c.util.PathBuilder;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
 /**
  * This implementation of the {@link MessageResolver} works like the default implementation {@link FilemanagerMessageLibResolver},
@@ -48,12 +49,12 @@ public class FilemanagerMessageResolver extends AbstractFilemanagerMessageResolv
 		if(!msgFolder.exists())
 			throw new RuntimeException("C5 scripts folder couldn't be found!");
 
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectReader reader = JacksonRegistry.getReader(Map.class);
 		try {
 			for(File file: msgFolder.listFiles(jsFilter)) {
 				String lang = FilenameUtils.getBaseName(file.getName());
 		        @SuppressWarnings("unchecked")
-				Map<String, String> langData = mapper.readValue(file, Map.class);
+				Map<String, String> langData = reader.readValue(file);
 				collectLangData(lang, langData);
 			}
 		} catch (Exception e) {
@@ -0,0 +1,340 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import codes.thischwa.jii.IDimensionProvider;
+import codes.thischwa.jii.exception.ReadException;
+
+/**
+ * Implementation of the {@link IDimensionProvider} which reads only the header of an image to get its dimension. The
+ * following formats are parsed natively: PNG (IHDR), GIF (logical screen), BMP, WebP (VP8, VP8L, VP8X) and JPEG (SOFn
+ * markers). All other formats are handled by the {@link ImageReader} of the image-io api, if there is one.<br/>
+ * <br/>
+ * If the image is set by a {@link File} or a {@link Path}, it is read through a {@link FileChannel}, so JPEG segments in
+ * front of the SOF marker (e.g. EXIF data) are skipped without reading them.<br/>
+ * Each instance holds a small direct buffer which is reused for each call. Like all {@link IDimensionProvider}s this
+ * implementation isn't thread-safe.
+ */
+public class HeaderDimensionProvider implements IDimensionProvider {
+
+	private static final int buffer_size = 4096;
+
+	private static final int mark_limit = 64 * 1024;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(buffer_size);
+
+	private final byte[] transfer = new byte[buffer_size];
+
+	private Path path;
+
+	private InputStream in;
+
+	private FileChannel channel;
+
+	private boolean eof;
+
+	/**
+	 * Sets the image to analyze by its {@link InputStream}. If the stream supports marks, it is reset for formats which
+	 * aren't parsed natively.
+	 *
+	 * @param in
+	 *            the {@link InputStream} of the image, it won't be closed
+	 */
+	public void set(InputStream in) {
+		this.in = in;
+		this.path = null;
+		if(in.markSupported())
+			in.mark(mark_limit);
+	}
+
+	/**
+	 * Sets the image to analyze by its file.
+	 *
+	 * @param file
+	 *            the image file
+	 */
+	public void set(File file) {
+		set(file.toPath());
+	}
+
+	/**
+	 * Sets the image to analyze by its path.
+	 *
+	 * @param path
+	 *            the path of the image file
+	 */
+	public void set(Path path) {
+		this.path = path;
+		this.in = null;
+	}
+
+	/**
+	 * Reads the dimension of the image set before.
+	 *
+	 * @return the dimension of the image
+	 * @throws ReadException
+	 *             if the image couldn't be read or its format isn't supported
+	 */
+	public Dimension getDimension() throws ReadException {
+		if(path == null && in == null)
+			throw new ReadException("No image set.");
+		try {
+			if(path != null)
+				channel = FileChannel.open(path, StandardOpenOption.READ);
+			buffer.clear();
+			buffer.limit(0);
+			eof = false;
+			Dimension dim = readDimension();
+			if(dim == null)
+				dim = readDimensionByImageIO();
+			if(dim == null)
+				throw new ReadException("Unsupported image format.");
+			return dim;
+		} catch (IOException e) {
+			throw new ReadException(String.format("Error while reading the image: %s", e.getMessage()));
+		} finally {
+			IOUtils.closeQuietly(channel);
+			channel = null;
+			path = null;
+			in = null;
+		}
+	}
+
+	private Dimension readDimension() throws IOException {
+		if(!fill(12))
+			return null;
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		int pos = buffer.position();
+		int b0 = unsigned(pos);
+		int b1 = unsigned(pos + 1);
+
+		// jpeg
+		if(b0 == 0xFF && b1 == 0xD8) {
+			skip(2);
+			return readJpeg();
+		}
+		// png: 8 bytes signature, IHDR chunk: length, type, width, height
+		if(b0 == 0x89 && b1 == 'P' && unsigned(pos + 2) == 'N' && unsigned(pos + 3) == 'G') {
+			if(!fill(24))
+				return null;
+			return new Dimension(buffer.getInt(pos + 16), buffer.getInt(pos + 20));
+		}
+		// gif: signature, version, logical screen width and height
+		if(b0 == 'G' && b1 == 'I' && unsigned(pos + 2) == 'F') {
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return new Dimension(buffer.getShort(pos + 6) & 0xFFFF, buffer.getShort(pos + 8) & 0xFFFF);
+		}
+		// bmp: file header, dib header
+		if(b0 == 'B' && b1 == 'M') {
+			if(!fill(26))
+				return null;
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			int dibHeaderSize = buffer.getInt(pos + 14);
+			if(dibHeaderSize == 12)
+				return new Dimension(buffer.getShort(pos + 18) & 0xFFFF, buffer.getShort(pos + 20) & 0xFFFF);
+			return new Dimension(Math.abs(buffer.getInt(pos + 18)), Math.abs(buffer.getInt(pos + 22)));
+		}
+		// webp: riff header, first chunk
+		if(b0 == 'R' && b1 == 'I' && unsigned(pos + 2) == 'F' && unsigned(pos + 3) == 'F' && unsigned(pos + 8) == 'W'
+				&& unsigned(pos + 9) == 'E' && unsigned(pos + 10) == 'B' && unsigned(pos + 11) == 'P') {
+			if(!fill(30))
+				return null;
+			return readWebP(pos);
+		}
+		return null;
+	}
+
+	private Dimension readWebP(int pos) {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if(unsigned(pos + 12) != 'V' || unsigned(pos + 13) != 'P' || unsigned(pos + 14) != '8')
+			return null;
+		switch(unsigned(pos + 15)) {
+		case ' ':
+			// lossy: frame tag, start code, 14 bits width and height
+			if(unsigned(pos + 23) != 0x9D || unsigned(pos + 24) != 0x01 || unsigned(pos + 25) != 0x2A)
+				return null;
+			return new Dimension(buffer.getShort(pos + 26) & 0x3FFF, buffer.getShort(pos + 28) & 0x3FFF);
+		case 'L': {
+			// lossless: signature, 14 bits width-1 and height-1
+			if(unsigned(pos + 20) != 0x2F)
+				return null;
+			int b1 = unsigned(pos + 21);
+			int b2 = unsigned(pos + 22);
+			int b3 = unsigned(pos + 23);
+			int b4 = unsigned(pos + 24);
+			int width = 1 + (((b2 & 0x3F) << 8) | b1);
+			int height = 1 + (((b4 & 0x0F) << 10) | (b3 << 2) | ((b2 & 0xC0) >> 6));
+			return new Dimension(width, height);
+		}
+		case 'X':
+			// extended: flags, 24 bits canvas width-1 and height-1
+			return new Dimension(1 + uint24(pos + 24), 1 + uint24(pos + 27));
+		default:
+			return null;
+		}
+	}
+
+	private Dimension readJpeg() throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		while(true) {
+			// search the next marker, fill bytes are allowed
+			if(!fill(1))
+				return null;
+			if(unsigned(buffer.position()) != 0xFF)
+				return null;
+			int marker;
+			do {
+				skip(1);
+				if(!fill(1))
+					return null;
+				marker = unsigned(buffer.position());
+			} while(marker == 0xFF);
+			skip(1);
+
+			// markers without a segment
+			if(marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8))
+				continue;
+			if(marker == 0xD9 || marker == 0xDA)
+				return null;
+
+			if(!fill(2))
+				return null;
+			int length = buffer.getShort(buffer.position()) & 0xFFFF;
+			if(isStartOfFrame(marker)) {
+				// length, precision, height, width
+				if(!fill(7))
+					return null;
+				int pos = buffer.position();
+				int height = buffer.getShort(pos + 3) & 0xFFFF;
+				int width = buffer.getShort(pos + 5) & 0xFFFF;
+				return new Dimension(width, height);
+			}
+			if(length < 2)
+				return null;
+			skip(length);
+		}
+	}
+
+	private static boolean isStartOfFrame(int marker) {
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+
+	private Dimension readDimensionByImageIO() throws IOException {
+		Object input;
+		if(path != null) {
+			input = path.toFile();
+		} else {
+			if(!in.markSupported())
+				return null;
+			in.reset();
+			input = in;
+		}
+		ImageInputStream iis = ImageIO.createImageInputStream(input);
+		if(iis == null)
+			return null;
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if(!readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis, true, true);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			iis.close();
+		}
+	}
+
+	/**
+	 * Ensures that at least 'count' bytes are available in the buffer.
+	 *
+	 * @return <code>false</code> if the end of the image is reached before
+	 */
+	private boolean fill(int count) throws IOException {
+		if(buffer.remaining() >= count)
+			return true;
+		buffer.compact();
+		try {
+			while(buffer.position() < count && !eof) {
+				int read;
+				if(channel != null) {
+					read = channel.read(buffer);
+				} else {
+					read = in.read(transfer, 0, Math.min(transfer.length, buffer.remaining()));
+					if(read > 0)
+						buffer.put(transfer, 0, read);
+				}
+				if(read == -1)
+					eof = true;
+			}
+		} finally {
+			buffer.flip();
+		}
+		return buffer.remaining() >= count;
+	}
+
+	/**
+	 * Skips 'count' bytes. Bytes which aren't buffered are skipped by the position of the channel, if possible.
+	 */
+	private void skip(long count) throws IOException {
+		int buffered = buffer.remaining();
+		if(count <= buffered) {
+			buffer.position(buffer.position() + (int) count);
+			return;
+		}
+		long left = count - buffered;
+		buffer.clear();
+		buffer.limit(0);
+		if(channel != null) {
+			channel.position(channel.position() + left);
+			return;
+		}
+		while(left > 0) {
+			long skipped = in.skip(left);
+			if(skipped <= 0) {
+				if(in.read() == -1) {
+					eof = true;
+					return;
+				}
+				skipped = 1;
+			}
+			left -= skipped;
+		}
+	}
+
+	private int unsigned(int index) {
+		return buffer.get(index) & 0xFF;
+	}
+
+	private int uint24(int index) {
+		return unsigned(index) | (unsigned(index + 1) << 8) | (unsigned(index + 2) << 16);
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import codes.thischwa.c5c.PropertiesLoader;
+
+/**
+ * Pools of the {@link ImageReader} and {@link ImageWriter} instances, one pool per format. The lookup of the service
+ * registry is done only once per extension, the instances are reset and reused after each image. The encoding of the
+ * derived images respects the configured JPEG quality, progressive mode and PNG compression level.
+ */
+final class ImageCodecPool {
+
+	private static final float jpegQuality = PropertiesLoader.getThumbnailJpegQuality();
+
+	private static final boolean jpegProgressive = PropertiesLoader.isThumbnailJpegProgressive();
+
+	private static final int pngCompression = PropertiesLoader.getThumbnailPngCompression();
+
+	/** The providers of the readers by the lower-case extension. */
+	private static final ConcurrentMap<String, ImageReaderSpi> readerProviders = new ConcurrentHashMap<>();
+
+	/** The providers of the writers by the lower-case extension. */
+	private static final ConcurrentMap<String, ImageWriterSpi> writerProviders = new ConcurrentHashMap<>();
+
+	/** Idle readers by their provider, they aren't thread-safe. */
+	private static final ConcurrentMap<ImageReaderSpi, Queue<ImageReader>> readers = new ConcurrentHashMap<>();
+
+	/** Idle writers by their provider, they aren't thread-safe. */
+	private static final ConcurrentMap<ImageWriterSpi, Queue<ImageWriter>> writers = new ConcurrentHashMap<>();
+
+	private ImageCodecPool() {
+	}
+
+	/**
+	 * Borrows a reader for an image. The reader is selected by the extension, if it can't decode the image, it's
+	 * selected by the content. The input of the reader is set already, it has to be returned by
+	 * {@link #returnReader(ImageReader)}.
+	 *
+	 * @param iis
+	 *            the image
+	 * @param ext
+	 *            the extension of the image
+	 * @return the reader
+	 * @throws IOException
+	 *             if the format of the image isn't supported
+	 */
+	static ImageReader borrowReader(ImageInputStream iis, String ext) throws IOException {
+		ImageReaderSpi spi = getReaderProvider(ext);
+		if(spi == null || !spi.canDecodeInput(iis)) {
+			Iterator<ImageReader> iter = ImageIO.getImageReaders(iis);
+			if(!iter.hasNext())
+				throw new IOException("Unsupported image format.");
+			spi = iter.next().getOriginatingProvider();
+		}
+		ImageReader reader = getPool(readers, spi).poll();
+		if(reader == null)
+			reader = spi.createReaderInstance();
+		reader.setInput(iis, true, true);
+		return reader;
+	}
+
+	/**
+	 * Resets a reader and returns it to its pool.
+	 *
+	 * @param reader
+	 *            the reader, it could be <code>null</code>
+	 */
+	static void returnReader(ImageReader reader) {
+		if(reader == null)
+			return;
+		reader.reset();
+		getPool(readers, reader.getOriginatingProvider()).offer(reader);
+	}
+
+	/**
+	 * Encodes an image by a pooled writer. The JPEG quality, the progressive mode and the PNG compression level are
+	 * respected, if they are configured and supported by the writer.
+	 *
+	 * @param img
+	 *            the image
+	 * @param ext
+	 *            the extension of the desired format
+	 * @return the encoded image
+	 * @throws IOException
+	 *             if the format isn't supported or the image couldn't be encoded
+	 */
+	static byte[] encode(BufferedImage img, String ext) throws IOException {
+		ImageWriterSpi spi = getWriterProvider(ext);
+		if(spi == null || !spi.canEncodeImage(img))
+			throw new IOException(String.format("The image couldn't be encoded as %s.", ext));
+		ImageWriter writer = getPool(writers, spi).poll();
+		if(writer == null)
+			writer = spi.createWriterInstance();
+		// the buffer is sized for the usual compression ratio, so it's rarely grown
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(4096, img.getWidth() * img.getHeight() / 2));
+		try (ImageOutputStream ios = new MemoryCacheImageOutputStream(baos)) {
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(img, null, null), buildWriteParam(writer));
+		} finally {
+			writer.reset();
+			getPool(writers, spi).offer(writer);
+		}
+		return baos.toByteArray();
+	}
+
+	private static ImageWriteParam buildWriteParam(ImageWriter writer) {
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		String format = writer.getOriginatingProvider().getFormatNames()[0].toLowerCase();
+		if(format.equals("jpeg") || format.equals("jpg")) {
+			if(jpegQuality >= 0 && param.canWriteCompressed()) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(jpegQuality);
+			}
+			if(param.canWriteProgressive())
+				param.setProgressiveMode((jpegProgressive) ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+		} else if(format.equals("png") && pngCompression >= 0 && param.canWriteCompressed()) {
+			// the quality is mapped to the deflate level by the writer: 1.0 is no compression, 0.0 the best one
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			if(param.getCompressionTypes() != null && param.getCompressionType() == null)
+				param.setCompressionType(param.getCompressionTypes()[0]);
+			param.setCompressionQuality(1f - Math.min(pngCompression, 9) / 9f);
+		}
+		return param;
+	}
+
+	private static ImageReaderSpi getReaderProvider(String ext) {
+		if(ext == null || ext.isEmpty())
+			return null;
+		String suffix = ext.toLowerCase();
+		ImageReaderSpi spi = readerProviders.get(suffix);
+		if(spi == null) {
+			Iterator<ImageReaderSpi> iter = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+			while(spi == null && iter.hasNext()) {
+				ImageReaderSpi candidate = iter.next();
+				if(containsIgnoreCase(candidate.getFileSuffixes(), suffix))
+					spi = candidate;
+			}
+			if(spi != null)
+				readerProviders.putIfAbsent(suffix, spi);
+		}
+		return spi;
+	}
+
+	private static ImageWriterSpi getWriterProvider(String ext) {
+		if(ext == null || ext.isEmpty())
+			return null;
+		String suffix = ext.toLowerCase();
+		ImageWriterSpi spi = writerProviders.get(suffix);
+		if(spi == null) {
+			Iterator<ImageWriterSpi> iter = IIORegistry.getDefaultInstance().getServiceProviders(ImageWriterSpi.class, true);
+			while(spi == null && iter.hasNext()) {
+				ImageWriterSpi candidate = iter.next();
+				if(containsIgnoreCase(candidate.getFileSuffixes(), suffix) || containsIgnoreCase(candidate.getFormatNames(), suffix))
+					spi = candidate;
+			}
+			if(spi != null)
+				writerProviders.putIfAbsent(suffix, spi);
+		}
+		return spi;
+	}
+
+	private static boolean containsIgnoreCase(String[] values, String value) {
+		if(values == null)
+			return false;
+		for(String v : values) {
+			if(v.equalsIgnoreCase(value))
+				return true;
+		}
+		return false;
+	}
+
+	private static <K, V> Queue<V> getPool(ConcurrentMap<K, Queue<V>> pools, K key) {
+		Queue<V> pool = pools.get(key);
+		if(pool == null) {
+			Queue<V> newPool = new ConcurrentLinkedQueue<>();
+			pool = pools.putIfAbsent(key, newPool);
+			if(pool == null)
+				pool = newPool;
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImagingOpException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.imgscalr.Scalr;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.ImageProcessingScheduler;
+import codes.thischwa.c5c.UserObjectProxy;
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
+
+/**
+ * Derives several scaled variants of an image from a single decode. The image is read with a reduced resolution:
+ * only every n-th pixel is decoded, so the image is at least twice as large as the largest target dimension. The
+ * variants are scaled progressively, from the largest to the smallest one, each of them is scaled from the previous
+ * variant instead of the original, if it's large enough. The decoding has to be admitted by the
+ * {@link ImageProcessingScheduler}, the required memory is estimated by the header of the image. The readers and
+ * writers are pooled, see {@link ImageCodecPool}.
+ */
+final class ImageDerivation {
+
+	/** Orders the dimensions from the largest to the smallest area. */
+	private static final Comparator<Dimension> largestFirst = new Comparator<Dimension>() {
+		@Override
+		public int compare(Dimension d1, Dimension d2) {
+			return Long.compare((long) d2.width * d2.height, (long) d1.width * d1.height);
+		}
+	};
+
+	private ImageDerivation() {
+	}
+
+	/**
+	 * Derives the scaled variants of an image.
+	 *
+	 * @param imageIn
+	 *            the image
+	 * @param imageExt
+	 *            the extension of the image, it's the format of the variants too
+	 * @param targets
+	 *            the target dimensions, which are derived in any case, it mustn't be empty
+	 * @param optionalTargets
+	 *            the target dimensions, which are derived only if the image is larger than them
+	 * @param action
+	 *            the action for the exceptions
+	 * @return the encoded variants, keyed by their target dimension
+	 * @throws IOException
+	 *             if the image can't be read or scaled
+	 * @throws ServiceUnavailableException
+	 *             if the image processing is overloaded
+	 */
+	static Map<Dimension, byte[]> derive(InputStream imageIn, String imageExt, Collection<Dimension> targets,
+			Collection<Dimension> optionalTargets, FilemanagerAction action) throws IOException, ServiceUnavailableException {
+		// the image is buffered in memory instead of a temporary file
+		ImageInputStream iis = new MemoryCacheImageInputStream(imageIn);
+		ImageReader reader = null;
+		ImageProcessingScheduler.Permit permit = null;
+		BufferedImage img = null;
+		try {
+			reader = ImageCodecPool.borrowReader(iis, imageExt);
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			List<Dimension> ordered = new ArrayList<>(targets);
+			for(Dimension dim : optionalTargets) {
+				if(!ordered.contains(dim) && (width > dim.width || height > dim.height))
+					ordered.add(dim);
+			}
+			Collections.sort(ordered, largestFirst);
+			Dimension bounds = new Dimension();
+			for(Dimension dim : ordered) {
+				bounds.width = Math.max(bounds.width, dim.width);
+				bounds.height = Math.max(bounds.height, dim.height);
+			}
+			int subsampling = computeSubsampling(width, height, bounds);
+			ImageReadParam param = reader.getDefaultReadParam();
+			if(subsampling > 1)
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+			Dimension decoded = new Dimension((width + subsampling - 1) / subsampling, (height + subsampling - 1) / subsampling);
+			permit = UserObjectProxy.getImageProcessingScheduler().acquire(ImageProcessingScheduler.estimateCost(decoded, bounds), action);
+			img = reader.read(0, param);
+			return scale(img, imageExt, ordered);
+		} catch (IllegalArgumentException | ImagingOpException e) {
+			throw new IOException(e);
+		} finally {
+			if(permit != null)
+				permit.release();
+			if(img != null)
+				img.flush();
+			ImageCodecPool.returnReader(reader);
+			iis.close();
+		}
+	}
+
+	/**
+	 * Scales the decoded image progressively to the target dimensions.
+	 *
+	 * @param img
+	 *            the decoded image
+	 * @param imageExt
+	 *            the format of the variants
+	 * @param ordered
+	 *            the target dimensions, ordered from the largest to the smallest one
+	 * @return the encoded variants, keyed by their target dimension
+	 */
+	private static Map<Dimension, byte[]> scale(BufferedImage img, String imageExt, List<Dimension> ordered) throws IOException {
+		Map<Dimension, byte[]> variants = new LinkedHashMap<>();
+		BufferedImage previous = null;
+		try {
+			for(Dimension dim : ordered) {
+				// the previous variant is used as source, if it isn't upscaled by that
+				BufferedImage source = (previous != null && isSufficientSource(previous, img, dim)) ? previous : img;
+				BufferedImage scaled = Scalr.resize(source, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, dim.width, dim.height);
+				variants.put(dim, ImageCodecPool.encode(scaled, imageExt));
+				if(previous != null && previous != scaled && previous != img)
+					previous.flush();
+				previous = scaled;
+			}
+		} finally {
+			if(previous != null && previous != img)
+				previous.flush();
+		}
+		return variants;
+	}
+
+	/**
+	 * Checks if a scaled variant is as large as the target dimension on the side, which is respected by
+	 * {@link Scalr.Mode#AUTOMATIC}. The target could be scaled from the variant instead of the original then.
+	 */
+	private static boolean isSufficientSource(BufferedImage scaled, BufferedImage original, Dimension dim) {
+		boolean landscape = original.getWidth() >= original.getHeight();
+		return (landscape) ? scaled.getWidth() >= dim.width : scaled.getHeight() >= dim.height;
+	}
+
+	/**
+	 * Computes the subsampling factor, so both sides of the decoded image are at least twice as large as the target
+	 * dimension.
+	 *
+	 * @param width
+	 *            the width of the original image
+	 * @param height
+	 *            the height of the original image
+	 * @param dim
+	 *            the target dimension
+	 * @return the subsampling factor, 1 means all pixels are decoded
+	 */
+	static int computeSubsampling(int width, int height, Dimension dim) {
+		if(dim.width <= 0 || dim.height <= 0)
+			return 1;
+		return Math.max(1, Math.min(width / (2 * dim.width), height / (2 * dim.height)));
+	}
+}
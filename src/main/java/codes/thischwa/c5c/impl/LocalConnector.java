@@ -15,8 +15,7 @@ import java.awt.image.BufferedImage;
 import java.awt.image.ImagingOpException;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -24,15 +23,24 @@ import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -42,10 +50,14 @@ import org.imgscalr.Scalr;
 import codes.thischwa.c5c.FilemanagerAction;
 import codes.thischwa.c5c.GenericConnector;
 import codes.thischwa.c5c.PropertiesLoader;
+import codes.thischwa.c5c.ThumbnailCache;
+import codes.thischwa.c5c.ThumbnailMemoryCache;
 import codes.thischwa.c5c.UserObjectProxy;
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.exception.FilemanagerException.Key;
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
+import codes.thischwa.c5c.util.SingleFlight;
 
 /**
  * The default implementation of the connector servlet.
@@ -56,6 +68,54 @@ import codes.thischwa.c5c.exception.FilemanagerException.Key;
  * <a href="http://www.thebuzzmedia.com/software/imgscalr-java-image-scaling-library/">imgscalr – Java Image Scaling Library</a> is used.
  */
 public class LocalConnector extends GenericConnector {
+
+	/** Folders with less entries are always processed in the request thread. */
+	private static final int parallel_threshold = 256;
+
+	/** The pool to process the entries of large folders, <code>null</code> if it's disabled. */
+	private ForkJoinPool folderPool;
+
+	/** Coalesces the concurrent derivation of the same image. */
+	private final SingleFlight<String, byte[]> deriveFlights = new SingleFlight<>();
+
+	/** The max. time in milliseconds to wait for the resizing of another request. */
+	private long resizeTimeout;
+
+	/** Reads the thumbnails embedded in the EXIF data of JPEGs. */
+	private ExifThumbnailReader exifThumbnailReader = new ExifThumbnailReader(false);
+
+	@Override
+	public void init() throws RuntimeException {
+		super.init();
+		resizeTimeout = PropertiesLoader.getResizeTimeout() * 1000L;
+		exifThumbnailReader = new ExifThumbnailReader(PropertiesLoader.isThumbnailExifEnabled());
+		exifThumbnailReader.registerMBean();
+		initFolderPool(PropertiesLoader.getFolderParallelism());
+	}
+
+	/**
+	 * (Re-)Initializes the pool which reads large folders.
+	 *
+	 * @param parallelism
+	 *            the parallelism of the pool, 0 disables it
+	 */
+	void initFolderPool(int parallelism) {
+		if(folderPool != null) {
+			folderPool.shutdownNow();
+			folderPool = null;
+		}
+		if(parallelism > 0) {
+			folderPool = new ForkJoinPool(parallelism);
+			logger.info("Folder pool initialized with a parallelism of {}", parallelism);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		initFolderPool(0);
+		exifThumbnailReader.unregisterMBean();
+		super.destroy();
+	}
 	
 	@Override
 	public Set<FileProperties> getFolder(String backendPath, boolean needSize) throws C5CException {
@@ -66,11 +126,17 @@ public class LocalConnector extends GenericConnector {
 	@Override
 	public GenericConnector.FileProperties getInfo(String backendPath, boolean needSize) throws C5CException {
 		Path path = buildRealPath(backendPath);
-		if(!Files.exists(path)) {
+		LocalFileAttributes attrs;
+		try {
+			Path parent = path.toAbsolutePath().getParent();
+			attrs = LocalFileAttributes.read(path, parent == null || LocalFileAttributes.isAccessCheckRequired(parent));
+		} catch (NoSuchFileException e) {
 			logger.error("Requested file not exits: {}", path.toAbsolutePath());
 			throw new FilemanagerException(FilemanagerAction.INFO, FilemanagerException.Key.FileNotExists, backendPath);
+		} catch (IOException | SecurityException e) {
+			throw new C5CException(FilemanagerAction.INFO, String.format("Error while reading the attributes of [%s]: %s", backendPath, e.getMessage()));
 		}
-		return constructFileInfo(path, needSize);
+		return constructFileInfo(path, attrs, needSize);
 	}
 	
 	@Override
@@ -84,6 +150,8 @@ public class LocalConnector extends GenericConnector {
 		}
 		
 		Path dest = src.resolveSibling(sanitizedName);
+		invalidateCaches(src.toString());
+		invalidateCaches(dest.toString());
 		try {
 			Files.move(src, dest);
 		} catch (SecurityException | IOException e) {
@@ -138,6 +206,7 @@ public class LocalConnector extends GenericConnector {
 			FilemanagerException.Key key = (isDir) ? FilemanagerException.Key.DirectoryNotExist : FilemanagerException.Key.FileNotExists;
 			throw new FilemanagerException(FilemanagerAction.DELETE, key, file.getFileName().toString());
 		}
+		invalidateCaches(file.toString());
 		boolean success = false;
 		if(isDir) {
 			try {
@@ -171,27 +240,26 @@ public class LocalConnector extends GenericConnector {
 	 * Construct file info.
 	 * 
 	 * @param path the file
+	 * @param attrs the already read attributes of the file
 	 * @param needSize the need size
 	 * @return the file info
 	 * @throws C5CException the connector exception
 	 */
-	private FileProperties constructFileInfo(Path path, boolean needSize) throws C5CException {
-		InputStream imageIn = null;
+	private FileProperties constructFileInfo(Path path, LocalFileAttributes attrs, boolean needSize) throws C5CException {
 		try {
 			FileProperties fileProperties;
-			Date lastModified = new Date(Files.getLastModifiedTime(path).toMillis());
-			// 'needsize' isn't implemented in the filemanager yet, so the dimension is set if we have an image.
+			Date lastModified = attrs.getLastModified();
 			String fileName = path.getFileName().toString();
 			String ext = FilenameUtils.getExtension(fileName.toString());
-			long size = Files.size(path);
-			boolean isProtected = isProtected(path);
-			if(isImageExtension(ext)) {
-				imageIn = new BufferedInputStream(Files.newInputStream(path));
-				Dimension dim = UserObjectProxy.getDimension(imageIn);
-				fileProperties = buildForImage(fileName, isProtected, dim.width, dim.height, size, lastModified);
+			boolean isProtected = attrs.isProtected();
+			if(attrs.isDirectory()) {
+				fileProperties = buildForDirectory(fileName, isProtected, lastModified);
+			} else if(needSize && isImageExtension(ext)) {
+				// the dimension is read only on demand, because it's expensive compared to the file attributes
+				Dimension dim = getImageDimension(path, lastModified.getTime(), attrs.getSize());
+				fileProperties = buildForImage(fileName, isProtected, dim.width, dim.height, attrs.getSize(), lastModified);
 			} else {
-				 fileProperties = (Files.isDirectory(path)) ? buildForDirectory(fileName, isProtected, lastModified)
-						 : buildForFile(fileName, isProtected, size, lastModified);
+				fileProperties = buildForFile(fileName, isProtected, attrs.getSize(), lastModified);
 			}
 			return fileProperties;
 		} catch (FileNotFoundException e) {
@@ -199,13 +267,14 @@ public class LocalConnector extends GenericConnector {
 		} catch (SecurityException | IOException e) {
 			logger.warn("Error while analyzing an image!", e);
 			throw new C5CException(String.format("Error while getting the dimension of the image %s: %s", path.getFileName().toString(), e.getMessage()));			
-		} finally {
-			IOUtils.closeQuietly(imageIn);
 		}
 	}
 
 	/**
-	 * Construct from dir request.
+	 * Construct from dir request. The directory is read in a single pass and the attributes of each entry are
+	 * read with one call, see {@link LocalFileAttributes}. Large folders are processed by the folder pool, if it's
+	 * enabled. The names are checked in the calling thread, because the check depends on the current request.
+	 * 
 	 * @param dir the dir
 	 * @param needSize the need size
 	 * @return the folder info
@@ -213,37 +282,111 @@ public class LocalConnector extends GenericConnector {
 	 */
 	private Set<FileProperties> constructFromDirRequest(Path dir, boolean needSize) throws C5CException {
 		Set<FileProperties> props = new HashSet<>();
-		
-		// add dirs
-		try {
-			for(Path d : Files.newDirectoryStream(dir, new DirectoryStream.Filter<Path>() {
-				@Override
-				public boolean accept(Path entry) throws IOException {
-					return Files.isDirectory(entry) && checkFolderName(entry.getFileName().toString());
-				}})) {
-				boolean isProtected =  isProtected(d);
-				FileProperties fp = buildForDirectory(d.getFileName().toString(), isProtected, new Date(Files.getLastModifiedTime(d).toMillis()));
-				props.add(fp);
+		boolean checkAccess = LocalFileAttributes.isAccessCheckRequired(dir);
+		List<DirEntry> dirEntries = new ArrayList<>();
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+			for(Path entry : entries) {
+				String name = entry.getFileName().toString();
+				DirEntry dirEntry = new DirEntry(entry, checkFolderName(name), checkFilename(name));
+				if(dirEntry.folderAllowed || dirEntry.fileAllowed)
+					dirEntries.add(dirEntry);
 			}
 		} catch (IOException | SecurityException e) {
-			throw new C5CException(String.format("Error while fetching sub-directories from [%s]: %s", dir.toAbsolutePath().toString(), e.getMessage()));
+			throw new C5CException(String.format("Error while fetching the content of [%s]: %s", dir.toAbsolutePath().toString(), e.getMessage()));
 		}
 
-		// add files
-		try {
-			for(Path f : Files.newDirectoryStream(dir, new DirectoryStream.Filter<Path>() {
-				@Override
-				public boolean accept(Path entry) throws IOException {
-					return Files.isRegularFile(entry) && checkFilename(entry.getFileName().toString());
-				}})) {
-				props.add(constructFileInfo(f, needSize));
+		if(folderPool == null || dirEntries.size() < parallel_threshold) {
+			for(DirEntry dirEntry : dirEntries) {
+				FileProperties fp = constructDirEntry(dirEntry, checkAccess, needSize);
+				if(fp != null)
+					props.add(fp);
 			}
-		} catch (IOException | SecurityException e) {
-			throw new C5CException(String.format("Error while fetching files from [%s]: %s", dir.toAbsolutePath().toString(), e.getMessage()));
+			return props;
+		}
+
+		// the entries are split into chunks, so each thread handles a couple of them
+		int chunkSize = Math.max(parallel_threshold / 4, dirEntries.size() / (folderPool.getParallelism() * 4));
+		List<Callable<List<FileProperties>>> tasks = new ArrayList<>();
+		for(int i = 0; i < dirEntries.size(); i += chunkSize)
+			tasks.add(new DirEntryTask(dirEntries.subList(i, Math.min(i + chunkSize, dirEntries.size())), checkAccess, needSize));
+		try {
+			for(Future<List<FileProperties>> future : folderPool.invokeAll(tasks))
+				props.addAll(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new C5CException(String.format("Interrupted while fetching the content of [%s]", dir.toAbsolutePath().toString()));
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof C5CException)
+				throw (C5CException) e.getCause();
+			throw new C5CException(String.format("Error while fetching the content of [%s]: %s", dir.toAbsolutePath().toString(), e.getCause().getMessage()));
 		}
-		
 		return props;
 	}
+
+	/**
+	 * Constructs the file properties of an entry of a directory.
+	 *
+	 * @return the file properties, or <code>null</code> if the entry has to be skipped
+	 */
+	private FileProperties constructDirEntry(DirEntry dirEntry, boolean checkAccess, boolean needSize) throws C5CException {
+		Path entry = dirEntry.path;
+		LocalFileAttributes attrs;
+		try {
+			attrs = LocalFileAttributes.read(entry, checkAccess);
+		} catch (NoSuchFileException e) {
+			// deleted in the meantime or a broken link
+			logger.debug("Entry disappeared or is a broken link: {}", entry);
+			return null;
+		} catch (IOException | SecurityException e) {
+			throw new C5CException(String.format("Error while reading the attributes of [%s]: %s", entry.toAbsolutePath().toString(), e.getMessage()));
+		}
+		if(attrs.isDirectory())
+			return (dirEntry.folderAllowed) ? buildForDirectory(entry.getFileName().toString(), attrs.isProtected(), attrs.getLastModified()) : null;
+		if(attrs.isRegularFile() && dirEntry.fileAllowed)
+			return constructFileInfo(entry, attrs, needSize);
+		return null;
+	}
+
+	/**
+	 * An entry of a directory with the result of the name checks.
+	 */
+	private static class DirEntry {
+		private final Path path;
+		private final boolean folderAllowed;
+		private final boolean fileAllowed;
+
+		DirEntry(Path path, boolean folderAllowed, boolean fileAllowed) {
+			this.path = path;
+			this.folderAllowed = folderAllowed;
+			this.fileAllowed = fileAllowed;
+		}
+	}
+
+	/**
+	 * Constructs the file properties of a chunk of directory entries inside the folder pool.
+	 */
+	private class DirEntryTask implements Callable<List<FileProperties>> {
+		private final List<DirEntry> dirEntries;
+		private final boolean checkAccess;
+		private final boolean needSize;
+
+		DirEntryTask(List<DirEntry> dirEntries, boolean checkAccess, boolean needSize) {
+			this.dirEntries = dirEntries;
+			this.checkAccess = checkAccess;
+			this.needSize = needSize;
+		}
+
+		@Override
+		public List<FileProperties> call() throws C5CException {
+			List<FileProperties> props = new ArrayList<>(dirEntries.size());
+			for(DirEntry dirEntry : dirEntries) {
+				FileProperties fp = constructDirEntry(dirEntry, checkAccess, needSize);
+				if(fp != null)
+					props.add(fp);
+			}
+			return props;
+		}
+	}
 	
 	@Override
 	public void upload(String urlDirectory, String sanitizedName, InputStream in) throws C5CException {
@@ -254,6 +397,8 @@ public class LocalConnector extends GenericConnector {
 			Files.copy(in, fileToSave, StandardCopyOption.REPLACE_EXISTING);
 		} catch (IOException e) {
 			throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.InvalidFileUpload, sanitizedName);
+		} finally {
+			invalidateCaches(fileToSave.toString());
 		}
 	}
 
@@ -261,8 +406,8 @@ public class LocalConnector extends GenericConnector {
 	public StreamContent download(String backendPath) throws C5CException {
 		Path file = buildRealPath(backendPath);
 		try {
-			InputStream in = new BufferedInputStream(Files.newInputStream(file, StandardOpenOption.READ));
-			return buildStreamContent(in, Files.size(file));
+			// the file is transferred directly to the response, see GenericResponse#writeContent
+			return buildStreamContent(file);
 		} catch (FileNotFoundException e) {
 			logger.error("Requested file not exits: {}", file.toAbsolutePath());
 			throw new FilemanagerException(FilemanagerAction.DOWNLOAD, FilemanagerException.Key.FileNotExists, backendPath);
@@ -272,58 +417,276 @@ public class LocalConnector extends GenericConnector {
 			throw new C5CException(FilemanagerAction.DOWNLOAD, msg);
 		}
 	}	
+
+	@Override
+	public StreamContent download(String backendPath, long offset, long length) throws C5CException {
+		Path file = buildRealPath(backendPath);
+		try {
+			// the channel is positioned at the offset, so the bytes before the range aren't read
+			return buildStreamContent(file, offset, length);
+		} catch (FileNotFoundException e) {
+			logger.error("Requested file not exits: {}", file.toAbsolutePath());
+			throw new FilemanagerException(FilemanagerAction.DOWNLOAD, FilemanagerException.Key.FileNotExists, backendPath);
+		} catch (IOException | SecurityException e) {
+			String msg = String.format("Error while downloading %s: %s", file.getFileName(), e.getMessage());
+			logger.error(msg, e);
+			throw new C5CException(FilemanagerAction.DOWNLOAD, msg);
+		}
+	}
 	
 	@Override
 	public StreamContent buildThumbnail(String backendPath, Dimension dim) throws C5CException {
 		Path file = buildRealPath(backendPath);
 		String ext = FilenameUtils.getExtension(backendPath);
 
-		InputStream in = null;
 		try {
-			in = Files.newInputStream(file);
-			return resize(in, ext, dim);
+			// the thumbnail is cached, so the original image has to be decoded only once,
+			// the most requested ones are served from memory
+			LocalFileAttributes attrs = LocalFileAttributes.read(file, false);
+			long lastModified = attrs.getLastModified().getTime();
+			long size = attrs.getSize();
+			String key = file.toString();
+			ThumbnailMemoryCache.CachedThumbnail hot = getThumbnailMemoryCache().get(key, lastModified, size, dim);
+			if(hot != null)
+				return buildStreamContent(hot, hot.getLength());
+			byte[] data = null;
+			Path cached = getDerivativeCache(dim).get(key, lastModified, size, dim);
+			if(cached != null) {
+				try {
+					data = Files.readAllBytes(cached);
+				} catch (NoSuchFileException e) {
+					logger.debug("Cached thumbnail of {} was evicted in the meantime.", backendPath);
+				}
+			}
+			if(data == null)
+				data = buildFromEmbeddedThumbnail(file, ext, lastModified, size, dim);
+			if(data == null)
+				data = deriveCoalesced(FilemanagerAction.THUMBNAIL, file, ext, lastModified, size, dim);
+			getThumbnailMemoryCache().put(key, lastModified, size, dim, data);
+			return buildStreamContent(new ByteArrayInputStream(data), data.length);
 		} catch (IllegalArgumentException | ImagingOpException | IOException e) {
 			throw new C5CException(FilemanagerAction.THUMBNAIL, e.getMessage());
-		} finally { 
-			IOUtils.closeQuietly(in);
 		}
 	}
 	
 	@Override
-	public StreamContent preview(String backendPath, Dimension maxPreviewDim) throws C5CException {
+	protected boolean isThumbnailCached(String backendPath, Dimension dim) {
 		Path file = buildRealPath(backendPath);
 		try {
-			Dimension currentDim = UserObjectProxy.getDimension(Files.newInputStream(file));
-			if(maxPreviewDim != null && (currentDim.width > maxPreviewDim.width || currentDim.height > maxPreviewDim.height)) {
-				return resize(new BufferedInputStream(Files.newInputStream(file)), FilenameUtils.getExtension(backendPath), maxPreviewDim);
+			LocalFileAttributes attrs = LocalFileAttributes.read(file, false);
+			long lastModified = attrs.getLastModified().getTime();
+			long size = attrs.getSize();
+			String key = file.toString();
+			ThumbnailMemoryCache.CachedThumbnail hot = getThumbnailMemoryCache().get(key, lastModified, size, dim);
+			if(hot != null) {
+				hot.close();
+				return true;
 			}
-			return buildStreamContent(Files.newInputStream(file), Files.size(file));
+			return getDerivativeCache(dim).get(key, lastModified, size, dim) != null;
 		} catch (IOException e) {
-			throw new C5CException(FilemanagerAction.PREVIEW, e.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	protected String resolveFolderIdentity(String backendPath) {
+		try {
+			return buildRealPath(backendPath).toRealPath().toString();
+		} catch (IOException e) {
+			// the folder is gone, reading it fails anyway
+			return super.resolveFolderIdentity(backendPath);
 		}
 	}
 
+	/**
+	 * Builds the thumbnail from the thumbnail, which is embedded in the EXIF data of a JPEG, see
+	 * {@link ExifThumbnailReader}. Only the header segments of the JPEG are read.
+	 *
+	 * @return the encoded thumbnail, or <code>null</code> if the embedded thumbnail is missing or not suitable, the
+	 *         whole image has to be decoded then
+	 */
+	private byte[] buildFromEmbeddedThumbnail(Path file, String ext, long lastModified, long size, Dimension dim) throws IOException {
+		if(!exifThumbnailReader.isApplicable(ext))
+			return null;
+		BufferedImage embedded = exifThumbnailReader.read(file, getImageDimension(file, lastModified, size), dim);
+		if(embedded == null)
+			return null;
+		BufferedImage scaled = null;
+		try {
+			scaled = Scalr.resize(embedded, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, dim.width, dim.height);
+			byte[] thumbnail = ImageCodecPool.encode(scaled, ext);
+			getDerivativeCache(dim).put(file.toString(), lastModified, size, dim, thumbnail);
+			return thumbnail;
+		} catch (IllegalArgumentException | ImagingOpException | IOException e) {
+			logger.debug("The embedded thumbnail of {} couldn't be scaled: {}", file, e.getMessage());
+			return null;
+		} finally {
+			embedded.flush();
+			if(scaled != null)
+				scaled.flush();
+		}
+	}
+
+	/**
+	 * Builds the preview of an image. The header is read only if the dimension isn't cached, and the image is decoded
+	 * only if it's larger than the desired dimension. The scaled previews are cached, see {@link #getPreviewCache()}.
+	 * The original image and cached previews are streamed by a {@link FileInputStream}, so the response could transfer
+	 * them directly.
+	 */
 	@Override
-	public StreamContent resize(InputStream imageIn, String imageExt, Dimension dim) throws IOException {
-		BufferedImage img = null;
-		BufferedImage newImg = null;
+	public StreamContent preview(String backendPath, Dimension maxPreviewDim) throws C5CException {
+		Path file = buildRealPath(backendPath);
+		String ext = FilenameUtils.getExtension(backendPath);
+		try {
+			LocalFileAttributes attrs = LocalFileAttributes.read(file, false);
+			long lastModified = attrs.getLastModified().getTime();
+			long size = attrs.getSize();
+			String key = file.toString();
+			// other files, e.g. audios or videos, are streamed as they are
+			if(maxPreviewDim != null && isImageExtension(ext)) {
+				Dimension currentDim = getImageDimension(file, lastModified, size);
+				if(currentDim.width > maxPreviewDim.width || currentDim.height > maxPreviewDim.height) {
+					Path cached = getDerivativeCache(maxPreviewDim).get(key, lastModified, size, maxPreviewDim);
+					if(cached != null) {
+						try {
+							FileInputStream in = new FileInputStream(cached.toFile());
+							return buildStreamContent(in, in.getChannel().size());
+						} catch (FileNotFoundException e) {
+							logger.debug("Cached preview of {} was evicted in the meantime.", backendPath);
+						}
+					}
+					byte[] data = deriveCoalesced(FilemanagerAction.PREVIEW, file, ext, lastModified, size, maxPreviewDim);
+					return buildStreamContent(new ByteArrayInputStream(data), data.length);
+				}
+			}
+			return buildStreamContent(file);
+		} catch (IllegalArgumentException | ImagingOpException | IOException e) {
+			throw new C5CException(FilemanagerAction.PREVIEW, e.getMessage());
+		}
+	}
+
+	/**
+	 * Retrieves the dimension of an image, it's read from the header only if it isn't cached already.
+	 *
+	 * @param path
+	 *            the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @return the dimension of the image
+	 * @throws IOException
+	 *             if the dimension couldn't be read
+	 */
+	private Dimension getImageDimension(Path path, long lastModified, long size) throws IOException {
+		String key = path.toString();
+		Dimension dim = getDimensionCache().get(key, lastModified, size);
+		if(dim == null) {
+			dim = UserObjectProxy.getDimension(path);
+			getDimensionCache().put(key, lastModified, size, dim);
+		}
+		return dim;
+	}
+
+	/**
+	 * Derives the desired variant of an image, concurrent requests of the same image and dimension are coalesced. So
+	 * the image is decoded only once, if several users browse the same folder. The other variants, which aren't cached
+	 * yet but whose cache is enabled, are derived by the same decode and are cached too, see {@link ImageDerivation}.
+	 * A thumbnail request derives the smaller variants only, because a larger one would spoil the subsampling of the
+	 * decode: it's the common request and it has to be cheap.
+	 *
+	 * @param action
+	 *            the action for the exceptions
+	 * @param file
+	 *            the image
+	 * @param ext
+	 *            the extension of the image
+	 * @param lastModified
+	 *            the last-modified time of the image in milliseconds
+	 * @param size
+	 *            the size of the image
+	 * @param dim
+	 *            the target dimension
+	 * @return the encoded variant
+	 * @throws IOException
+	 *             if the derivation has failed
+	 * @throws C5CException
+	 *             if the wait for the derivation of another request timed out or was interrupted, or if the image
+	 *             processing is overloaded
+	 */
+	private byte[] deriveCoalesced(final FilemanagerAction action, final Path file, final String ext, final long lastModified,
+			final long size, final Dimension dim) throws IOException, C5CException {
+		final String key = file.toString();
+		String flightKey = String.format("%s\t%d\t%d\t%dx%d", key, lastModified, size, dim.width, dim.height);
+		Callable<byte[]> task = new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException, C5CException {
+				Set<Dimension> optional = new LinkedHashSet<>();
+				for(Dimension d : getDerivativeDimensions()) {
+					if(d.equals(dim) || (action == FilemanagerAction.THUMBNAIL && (d.width > dim.width || d.height > dim.height)))
+						continue;
+					ThumbnailCache cache = getDerivativeCache(d);
+					if(cache.isEnabled() && cache.get(key, lastModified, size, d) == null)
+						optional.add(d);
+				}
+				Map<Dimension, byte[]> variants;
+				try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+					variants = ImageDerivation.derive(in, ext, Collections.singleton(dim), optional, action);
+				}
+				for(Map.Entry<Dimension, byte[]> variant : variants.entrySet())
+					getDerivativeCache(variant.getKey()).put(key, lastModified, size, variant.getKey(), variant.getValue());
+				return variants.get(dim);
+			}
+		};
 		try {
-			img = ImageIO.read(imageIn);
-			newImg = Scalr.resize(img, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, dim.width, dim.height);
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ImageIO.write(newImg, imageExt, baos);
-			baos.flush();
-			return buildStreamContent(new ByteArrayInputStream(baos.toByteArray()), baos.size());
-		} catch (IllegalArgumentException | ImagingOpException e) {
-			throw new IOException(e);
-		} finally { 
-			if(img != null)
-				img.flush();
-			if(newImg != null)
-				newImg.flush();
+			return deriveFlights.execute(flightKey, task, resizeTimeout);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof C5CException)
+				throw (C5CException) cause;
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		} catch (TimeoutException e) {
+			logger.warn("Timeout while waiting for the resizing of {}", key);
+			throw new C5CException(action, String.format("Timeout while resizing [%s]", key));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new C5CException(action, String.format("Interrupted while resizing [%s]", key));
 		}
 	}
 
+	/**
+	 * Collects the dimensions of all variants, which are derived from an image: the thumbnail, the preview and the
+	 * additional derivatives.
+	 */
+	private Set<Dimension> getDerivativeDimensions() {
+		Set<Dimension> dims = new LinkedHashSet<>();
+		if(UserObjectProxy.getThumbnailDimension() != null)
+			dims.add(UserObjectProxy.getThumbnailDimension());
+		if(UserObjectProxy.getPreviewDimension() != null)
+			dims.add(UserObjectProxy.getPreviewDimension());
+		dims.addAll(UserObjectProxy.getDerivativeDimensions());
+		return dims;
+	}
+
+	/**
+	 * Selects the cache of a variant: thumbnails are cached by the thumbnail cache, all other variants by the
+	 * preview cache.
+	 */
+	private ThumbnailCache getDerivativeCache(Dimension dim) {
+		return (dim.equals(UserObjectProxy.getThumbnailDimension())) ? getThumbnailCache() : getPreviewCache();
+	}
+
+	@Override
+	public StreamContent resize(InputStream imageIn, String imageExt, Dimension dim) throws IOException, ServiceUnavailableException {
+		Set<Dimension> none = Collections.emptySet();
+		byte[] data = ImageDerivation.derive(imageIn, imageExt, Collections.singleton(dim), none, FilemanagerAction.UPLOAD).get(dim);
+		return buildStreamContent(new ByteArrayInputStream(data), data.length);
+	}
+
 	@Override
 	public String editFile(String backendPath) throws C5CException {
 		Path file = buildRealPath(backendPath);
@@ -350,6 +713,7 @@ public class LocalConnector extends GenericConnector {
 			throw new C5CException(FilemanagerAction.SAVEFILE, e.getMessage());
 		} finally {
 			IOUtils.closeQuietly(out);
+			invalidateCaches(file.toString());
 		}
 	}
 
@@ -360,6 +724,8 @@ public class LocalConnector extends GenericConnector {
 			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
 		} catch (IOException e) {
 			throw new FilemanagerException(FilemanagerAction.REPLACE, FilemanagerException.Key.InvalidFileUpload, file.getFileName().toString());
+		} finally {
+			invalidateCaches(file.toString());
 		}
 	}
 	
@@ -369,7 +735,6 @@ public class LocalConnector extends GenericConnector {
 	}
 	
 	private boolean isProtected(Path path) {
-		File file = path.toFile();
-		return !(file.canRead() && file.canWrite());
+		return LocalFileAttributes.isProtected(path);
 	}
 }
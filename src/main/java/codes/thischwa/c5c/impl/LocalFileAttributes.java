@@ -0,0 +1,165 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the attributes of a local file or directory which are needed to build the file properties. All attributes
+ * are read with a single call to the file system.<br/>
+ * On unix-like systems the 'unix' attribute view is used, so the protection flag can be computed from the mode
+ * bits without additional calls, if the file is owned by the user of the JVM. In all other cases
+ * {@link File#canRead()} and {@link File#canWrite()} are used as fallback, e.g. if the parent directory isn't writable,
+ * which is the case for read-only file stores.
+ */
+final class LocalFileAttributes {
+	private static final Logger logger = LoggerFactory.getLogger(LocalFileAttributes.class);
+
+	private static final String unix_attributes = "unix:mode,uid,size,lastModifiedTime,isDirectory,isRegularFile";
+
+	private static final int mode_owner_read = 0400;
+
+	private static final int mode_owner_write = 0200;
+
+	private static final boolean unixViewSupported = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+	/** The uid of the user which runs the JVM, or -1 if it couldn't be determined. */
+	private static final int processUid = fetchProcessUid();
+
+	private final boolean isDirectory;
+
+	private final boolean isRegularFile;
+
+	private final long size;
+
+	private final Date lastModified;
+
+	private final boolean isProtected;
+
+	private LocalFileAttributes(boolean isDirectory, boolean isRegularFile, long size, FileTime lastModified, boolean isProtected) {
+		this.isDirectory = isDirectory;
+		this.isRegularFile = isRegularFile;
+		this.size = size;
+		this.lastModified = new Date(lastModified.toMillis());
+		this.isProtected = isProtected;
+	}
+
+	/**
+	 * Reads the attributes of the desired path. Symbolic links are followed.
+	 *
+	 * @param path
+	 *            the file or directory to read the attributes from
+	 * @param checkAccess
+	 *            <code>true</code> if the access rights have to be checked explicitly
+	 * @return the attributes of the path
+	 * @throws IOException
+	 *             if the attributes couldn't be read, e.g. the file doesn't exist or it is a broken link
+	 */
+	static LocalFileAttributes read(Path path, boolean checkAccess) throws IOException {
+		if(unixViewSupported && processUid != -1) {
+			Map<String, Object> attrs = Files.readAttributes(path, unix_attributes);
+			int mode = (Integer) attrs.get("mode");
+			int uid = (Integer) attrs.get("uid");
+			boolean isProtected;
+			if(checkAccess)
+				isProtected = isProtected(path);
+			else if(processUid == 0)
+				isProtected = false;
+			else if(uid == processUid)
+				isProtected = !((mode & mode_owner_read) != 0 && (mode & mode_owner_write) != 0);
+			else
+				isProtected = isProtected(path);
+			return new LocalFileAttributes((Boolean) attrs.get("isDirectory"), (Boolean) attrs.get("isRegularFile"),
+					(Long) attrs.get("size"), (FileTime) attrs.get("lastModifiedTime"), isProtected);
+		}
+
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		return new LocalFileAttributes(attrs.isDirectory(), attrs.isRegularFile(), attrs.size(), attrs.lastModifiedTime(),
+				isProtected(path));
+	}
+
+	/**
+	 * Checks if the desired path is protected, that means it isn't readable or writable.
+	 *
+	 * @param path
+	 *            the path to check
+	 * @return <code>true</code> if the path is protected
+	 */
+	static boolean isProtected(Path path) {
+		File file = path.toFile();
+		return !(file.canRead() && file.canWrite());
+	}
+
+	/**
+	 * Checks if the access rights of the entries of the desired directory have to be checked explicitly. That's the
+	 * case, if the directory itself isn't writable, e.g. because it resides on a read-only file store.
+	 *
+	 * @param dir
+	 *            the directory to check
+	 * @return <code>true</code> if the access rights of the entries have to be checked explicitly
+	 */
+	static boolean isAccessCheckRequired(Path dir) {
+		return !Files.isWritable(dir);
+	}
+
+	boolean isDirectory() {
+		return isDirectory;
+	}
+
+	boolean isRegularFile() {
+		return isRegularFile;
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	Date getLastModified() {
+		return lastModified;
+	}
+
+	boolean isProtected() {
+		return isProtected;
+	}
+
+	private static int fetchProcessUid() {
+		if(!unixViewSupported)
+			return -1;
+		Path tempFile = null;
+		try {
+			// a new file is always owned by the effective user of the process
+			tempFile = Files.createTempFile("c5c-", ".uid");
+			return (Integer) Files.getAttribute(tempFile, "unix:uid");
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Couldn't determine the uid of the process, protection will be checked per file.", e);
+			return -1;
+		} finally {
+			if(tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException e) {
+					logger.debug("Couldn't delete temporary file {}", tempFile);
+				}
+			}
+		}
+	}
+}
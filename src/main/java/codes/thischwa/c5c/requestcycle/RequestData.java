@@ -22,7 +22,6 @@ import org.slf4j.LoggerFactory;
 import codes.thischwa.c5c.PropertiesLoader;
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.util.StringUtils;
-import codes.thischwa.jii.IDimensionProvider;
 
 /**
  * This container maintenance objects per request. It relies on {@link ThreadLocal}.<br/>
@@ -30,8 +29,6 @@ import codes.thischwa.jii.IDimensionProvider;
  * <li>The {@link Locale}: It is grabbed from the query string of the referrer. That's the location set by the filemanager.</li>
  * <li> The {@link Context}.</li>
  * </ul>
- * <i>Hint:</i> The implementation of the {@link IDimensionProvider} will be initialized 
- * and provided for each request because there isn't any thread-save one.
  */
 public class RequestData {
 	private static Logger logger = LoggerFactory.getLogger(RequestData.class);
@@ -27,8 +27,8 @@ import codes.thischwa.c5c.PropertiesLoader;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.filemanager.Options;
 import codes.thischwa.c5c.requestcycle.FilemanagerConfigBuilder;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Default implementation of {@link FilemanagerConfigBuilder}. It loads the 
@@ -85,8 +85,7 @@ public class GlobalFilemanagerConfig implements FilemanagerConfigBuilder {
 				throw new FileNotFoundException(configFile.getPath());
 
 			// load the object
-			ObjectMapper mapper = new ObjectMapper();
-			userConfig = mapper.readValue(in, FilemanagerConfig.class);
+			userConfig = JacksonRegistry.getReader(FilemanagerConfig.class).readValue(in);
 		} catch (Exception e) {
 			logger.error("Error while loading the config file!", e);
 			throw new RuntimeException(e);
@@ -0,0 +1,107 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the content of a response by non-blocking I/O: a chunk is written only if the output is ready, otherwise the
+ * container calls {@link #onWritePossible()} again as soon as the client has taken the previous chunks. In the
+ * meantime no thread is bound to the response. The content is closed and the request is completed, if the content is
+ * written or an error or the timeout occurred.
+ */
+final class AsyncContentWriter implements WriteListener, AsyncListener {
+	private static Logger logger = LoggerFactory.getLogger(AsyncContentWriter.class);
+
+	private static final int bufferSize = 64 * 1024;
+
+	private final AsyncContext asyncContext;
+
+	private final ServletOutputStream out;
+
+	private final InputStream in;
+
+	private final byte[] buffer = new byte[bufferSize];
+
+	private final AtomicBoolean finished = new AtomicBoolean();
+
+	AsyncContentWriter(AsyncContext asyncContext, ServletOutputStream out, InputStream in) {
+		this.asyncContext = asyncContext;
+		this.out = out;
+		this.in = in;
+	}
+
+	@Override
+	public void onWritePossible() throws IOException {
+		while(out.isReady()) {
+			int read = in.read(buffer);
+			if(read < 0) {
+				finish(true);
+				return;
+			}
+			out.write(buffer, 0, read);
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		logger.debug("Asynchronous response aborted.", t);
+		finish(true);
+	}
+
+	@Override
+	public void onComplete(AsyncEvent event) {
+		finish(false);
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) {
+		logger.debug("Asynchronous response timed out.");
+		finish(true);
+	}
+
+	@Override
+	public void onError(AsyncEvent event) {
+		onError(event.getThrowable());
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+
+	/**
+	 * Closes the content and completes the request, each of them only once.
+	 */
+	private void finish(boolean complete) {
+		if(!finished.compareAndSet(false, true))
+			return;
+		IOUtils.closeQuietly(in);
+		if(complete) {
+			try {
+				asyncContext.complete();
+			} catch (IllegalStateException e) {
+				// the request is completed by the container already
+			}
+		}
+	}
+}
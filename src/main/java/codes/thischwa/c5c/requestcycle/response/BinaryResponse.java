@@ -0,0 +1,122 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+
+import codes.thischwa.c5c.FilemanagerAction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Base class for the responses with binary content, e.g. a download. The content is written synchronously by
+ * {@link #write(HttpServletResponse)} or asynchronously by {@link #writeAsync(HttpServletResponse, AsyncContext)}, see
+ * {@link AsyncContentWriter}.
+ */
+public abstract class BinaryResponse extends GenericResponse {
+
+	protected BinaryResponse(FilemanagerAction mode) {
+		super(mode);
+	}
+
+	/**
+	 * Sets the status and the headers of the response.
+	 *
+	 * @param resp
+	 *            the response
+	 */
+	protected abstract void writeHeaders(HttpServletResponse resp);
+
+	/**
+	 * Writes the content synchronously, the headers are set already. The content has to be closed in any case.
+	 *
+	 * @param resp
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected abstract void writeBody(HttpServletResponse resp) throws IOException;
+
+	/**
+	 * Gets the whole content as one stream, it's written asynchronously.
+	 *
+	 * @return the content, or <code>null</code> if the response hasn't any
+	 */
+	protected abstract InputStream getBody();
+
+	/**
+	 * Gets the local file of the content, it's sent by the container, if the sendfile support is available.
+	 *
+	 * @return the local file, or <code>null</code> if the content isn't a local file
+	 */
+	protected Path getFile() {
+		return null;
+	}
+
+	@Override
+	@JsonIgnore
+	public void write(HttpServletResponse resp) throws IOException {
+		writeHeaders(resp);
+		writeBody(resp);
+	}
+
+	/**
+	 * Checks whether the content should be written asynchronously. A local file, which is sent by the container, is
+	 * written synchronously, because the container doesn't bind a thread to it anyway.
+	 *
+	 * @return <code>true</code> if the content should be written by {@link #writeAsync(HttpServletResponse, AsyncContext)}
+	 */
+	@JsonIgnore
+	public boolean isAsyncWritable() {
+		return !isSendfileSupported(getFile());
+	}
+
+	/**
+	 * Writes the headers and starts the asynchronous writing of the content. It returns at once, the content is written
+	 * by the threads of the container, as soon as the client is ready to receive it. The request is completed, if the
+	 * content is written.
+	 *
+	 * @param resp
+	 *            the response
+	 * @param asyncContext
+	 *            the started asynchronous context of the request
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@JsonIgnore
+	public void writeAsync(HttpServletResponse resp, AsyncContext asyncContext) throws IOException {
+		InputStream body = null;
+		try {
+			writeHeaders(resp);
+			body = getBody();
+			if(body == null) {
+				asyncContext.complete();
+				return;
+			}
+			ServletOutputStream out = resp.getOutputStream();
+			AsyncContentWriter writer = new AsyncContentWriter(asyncContext, out, body);
+			asyncContext.addListener(writer);
+			out.setWriteListener(writer);
+		} catch (IOException | RuntimeException e) {
+			IOUtils.closeQuietly(body);
+			asyncContext.complete();
+			throw e;
+		}
+	}
+}
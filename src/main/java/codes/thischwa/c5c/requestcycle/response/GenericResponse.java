@@ -10,19 +10,33 @@
  */
 package codes.thischwa.c5c.requestcycle.response;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 
-import codes.thischwa.c5c.Constants;
 import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.Context;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.util.JacksonRegistry;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Base class for each response objects.
@@ -42,6 +56,11 @@ public class GenericResponse {
 	private int errorCode = DEFAULT_NO_ERROR_CODE;
 
 	private FilemanagerAction mode;
+
+	private static final String sendfileSupport = "org.apache.tomcat.sendfile.support";
+	private static final String sendfileFilename = "org.apache.tomcat.sendfile.filename";
+	private static final String sendfileStart = "org.apache.tomcat.sendfile.start";
+	private static final String sendfileEnd = "org.apache.tomcat.sendfile.end";
 	
 	protected GenericResponse(FilemanagerAction mode) {
 		this.mode = mode;
@@ -92,25 +111,187 @@ public class GenericResponse {
 		if (mode != null && mode.getContentType() != null)
 			resp.setContentType(mode.getContentType());
 		OutputStream out = resp.getOutputStream();
-		String json = toString();
-		IOUtils.write(json, out, resp.getCharacterEncoding());
-		IOUtils.closeQuietly(out);
+		try {
+			write(out, resp.getCharacterEncoding());
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Writes the JSON representation of the response to the {@link OutputStream}. The JSON is streamed directly, it's
+	 * the same as {@link #toString()}. Inherited object could overwrite this to wrap the JSON.
+	 * 
+	 * @param out
+	 *            the {@link OutputStream} to write to, it won't be closed
+	 * @param encoding
+	 *            the character encoding, if it's <code>null</code> the default encoding of the platform is used
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@JsonIgnore
+	public void write(OutputStream out, String encoding) throws IOException {
+		Charset charset = (encoding == null) ? Charset.defaultCharset() : Charset.forName(encoding);
+		Writer writer = new OutputStreamWriter(out, charset);
+		serialize(getSerializationObject(), writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes binary content to the {@link HttpServletResponse}, the headers have to be set already. A local file is
+	 * handed over to the sendfile support of the container, if it's available: that's the only way without copying
+	 * the content through the heap. Otherwise a {@link FileInputStream} is transferred by its channel, but the
+	 * target is just a channel wrapped around the output stream of the servlet, so the content is still copied
+	 * through a buffer on the heap. Other streams are copied by {@link IOUtils#copy(InputStream, OutputStream)}. The
+	 * stream is closed in any case.
+	 * 
+	 * @param resp
+	 *            the response
+	 * @param in
+	 *            the stream of the content
+	 * @param file
+	 *            the local file of the content, or <code>null</code> if it isn't a local file
+	 * @param contentLength
+	 *            the length of the content
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected static void writeContent(HttpServletResponse resp, InputStream in, Path file, long contentLength) throws IOException {
+		writeContent(resp, in, file, 0, contentLength);
+	}
+
+	/**
+	 * Writes binary content to the {@link HttpServletResponse} like {@link #writeContent(HttpServletResponse, InputStream, Path, long)},
+	 * but the content could be a range of the file. The channel of a {@link FileInputStream} is transferred from its
+	 * current position, so it has to be positioned at the offset already.
+	 * 
+	 * @param resp
+	 *            the response
+	 * @param in
+	 *            the stream of the content
+	 * @param file
+	 *            the local file of the content, or <code>null</code> if it isn't a local file or mustn't be sent by the
+	 *            container
+	 * @param offset
+	 *            the position of the content inside of the file
+	 * @param contentLength
+	 *            the length of the content
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected static void writeContent(HttpServletResponse resp, InputStream in, Path file, long offset, long contentLength) throws IOException {
+		try {
+			if(isSendfileSupported(file)) {
+				// the container sends the file after the servlet has returned
+				HttpServletRequest req = RequestData.getContext().getServletRequest();
+				req.setAttribute(sendfileFilename, file.toAbsolutePath().toString());
+				req.setAttribute(sendfileStart, Long.valueOf(offset));
+				req.setAttribute(sendfileEnd, Long.valueOf(offset + contentLength));
+				return;
+			}
+			OutputStream out = resp.getOutputStream();
+			if(in instanceof FileInputStream) {
+				FileChannel channel = ((FileInputStream) in).getChannel();
+				WritableByteChannel target = Channels.newChannel(out);
+				long position = channel.position();
+				long end = (contentLength < 0) ? channel.size() : Math.min(position + contentLength, channel.size());
+				long transferred;
+				while(position < end && (transferred = channel.transferTo(position, end - position, target)) > 0)
+					position += transferred;
+			} else {
+				IOUtils.copy(in, out);
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Checks whether a local file could be handed over to the sendfile support of the container.
+	 * 
+	 * @param file
+	 *            the local file of the content, it could be <code>null</code>
+	 * @return <code>true</code> if the container sends the file by itself
+	 */
+	protected static boolean isSendfileSupported(Path file) {
+		Context context = RequestData.getContext();
+		HttpServletRequest req = (context == null) ? null : context.getServletRequest();
+		return file != null && req != null && Boolean.TRUE.equals(req.getAttribute(sendfileSupport));
+	}
+
+	/**
+	 * Sets the headers which announce the support of ranges and identify the version of the content, so a client could
+	 * request a range of it by 'If-Range'.
+	 * 
+	 * @param resp
+	 *            the response
+	 * @param etag
+	 *            the entity tag of the content, if it is <code>null</code> the content can't be identified
+	 * @param lastModified
+	 *            the last-modified time of the content in milliseconds, 0 if it's unknown
+	 */
+	protected static void writeRangeHeaders(HttpServletResponse resp, String etag, long lastModified) {
+		resp.setHeader("Accept-Ranges", "bytes");
+		writeValidators(resp, etag, lastModified);
+	}
+
+	/**
+	 * Sets the validators of the content, so a client could cache it and revalidate it by a conditional request. The
+	 * 'Cache-Control' of the servlet is overwritten: the cached content has to be revalidated before each use.
+	 * 
+	 * @param resp
+	 *            the response
+	 * @param etag
+	 *            the entity tag of the content, if it is <code>null</code> the content can't be identified
+	 * @param lastModified
+	 *            the last-modified time of the content in milliseconds, 0 if it's unknown
+	 */
+	protected static void writeValidators(HttpServletResponse resp, String etag, long lastModified) {
+		if(etag == null)
+			return;
+		resp.setHeader("ETag", etag);
+		if(lastModified > 0)
+			resp.setDateHeader("Last-Modified", lastModified);
+		resp.setHeader("Cache-Control", "private, max-age=0, must-revalidate");
+	}
+
+	/**
+	 * Gets the object to serialize. Inherited object could overwrite this, if not the response itself has to be
+	 * serialized.
+	 * 
+	 * @return the object to serialize
+	 */
+	@JsonIgnore
+	protected Object getSerializationObject() {
+		return this;
 	}
 	
 	protected String serialize(Object obj) {
-		ObjectMapper mapper = new ObjectMapper();
+		StringWriter writer = new StringWriter();
 		try {
-			String jsonStr = mapper.writeValueAsString(obj);
-			// escaping the slashes to use JSON in textareas
-			jsonStr = jsonStr.replace(Constants.defaultSeparator, "\\".concat(Constants.defaultSeparator));
-			return jsonStr;
-		} catch (Exception e) {
+			serialize(obj, writer);
+		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		return writer.toString();
+	}
+
+	/**
+	 * Serializes the object to the {@link Writer}. The slashes are escaped to use the JSON in textareas.
+	 */
+	private static void serialize(Object obj, Writer writer) throws IOException {
+		ObjectWriter jsonWriter = JacksonRegistry.getResponseWriter(obj.getClass());
+		JsonGenerator generator = jsonWriter.getFactory().createGenerator(writer);
+		try {
+			jsonWriter.writeValue(generator, obj);
+		} finally {
+			generator.close();
+		}
 	}
 
 	@Override
 	public String toString() {
-		return serialize(this);
+		return serialize(getSerializationObject());
 	}
+
 }
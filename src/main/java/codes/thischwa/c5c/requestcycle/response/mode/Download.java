@@ -12,22 +12,21 @@ package codes.thischwa.c5c.requestcycle.response.mode;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 
 import codes.thischwa.c5c.FilemanagerAction;
-import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.requestcycle.response.BinaryResponse;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * Holds the data for a Download GenericResponse.
  */
-public final class Download extends GenericResponse {
+public final class Download extends BinaryResponse {
 
 	private String fullPath;
 	
@@ -35,11 +34,24 @@ public final class Download extends GenericResponse {
 	
 	private InputStream in;
 
+	private Path file;
+
+	private String etag;
+
+	private long lastModified;
+
 	public Download(String fullPath, long contentLength, InputStream in) {
+		this(fullPath, contentLength, in, null, null, 0);
+	}
+
+	public Download(String fullPath, long contentLength, InputStream in, Path file, String etag, long lastModified) {
 		super(FilemanagerAction.DOWNLOAD);
 		this.fullPath = fullPath;
 		this.contentLength = contentLength;
 		this.in = in;
+		this.file = file;
+		this.etag = etag;
+		this.lastModified = lastModified;
 	}
 	
 	@JsonProperty("Path")
@@ -48,13 +60,30 @@ public final class Download extends GenericResponse {
 	}
 	
 	@Override
-	@JsonIgnore
-	public void write(HttpServletResponse resp) throws IOException {
+	protected void writeHeaders(HttpServletResponse resp) {
 		resp.setHeader("Content-Type", "application/x-download");
 		resp.setHeader("Content-Transfer-Encoding", "Binary");
 		resp.setHeader("Content-Length", String.valueOf(contentLength));
+		if(contentLength >= 0)
+			writeRangeHeaders(resp, etag, lastModified);
+		else
+			writeValidators(resp, etag, lastModified);
 		resp.setHeader("Content-Disposition", 
 				String.format("attachment; filename=\"%s\"", FilenameUtils.getName(fullPath)));
-		IOUtils.copy(in, resp.getOutputStream());
+	}
+
+	@Override
+	protected void writeBody(HttpServletResponse resp) throws IOException {
+		writeContent(resp, in, file, contentLength);
+	}
+
+	@Override
+	protected InputStream getBody() {
+		return in;
+	}
+
+	@Override
+	protected Path getFile() {
+		return file;
 	}
 }
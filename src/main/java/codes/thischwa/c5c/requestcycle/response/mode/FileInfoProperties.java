@@ -118,7 +118,7 @@ public class FileInfoProperties {
 	}
 	
 	@JsonProperty("Size")
-	Long getSize() {
+	public Long getSize() {
 		return size;
 	}
 
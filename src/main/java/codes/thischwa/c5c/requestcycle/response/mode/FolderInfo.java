@@ -10,9 +10,12 @@
  */
 package codes.thischwa.c5c.requestcycle.response.mode;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletResponse;
+
 import codes.thischwa.c5c.Constants;
 import codes.thischwa.c5c.FilemanagerAction;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
@@ -22,13 +25,29 @@ import codes.thischwa.c5c.requestcycle.response.GenericResponse;
  */
 public final class FolderInfo extends GenericResponse {
 
+	/** The name of the header which holds the number of all entries of the folder. */
+	public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
 	private Map<String, FileInfo> folderItems;
 
+	private int totalCount = -1;
+
 	public FolderInfo() {
 		super(FilemanagerAction.FOLDER);
 		folderItems = new LinkedHashMap<>();
 	}
 
+	/**
+	 * Sets the number of all entries of the folder. That's needed by the client for paging, because the response
+	 * contains just the requested page.
+	 * 
+	 * @param totalCount
+	 *            the number of all entries of the folder
+	 */
+	public void setTotalCount(int totalCount) {
+		this.totalCount = totalCount;
+	}
+
 	public void add(final FileInfo fileInfo) {
 		String path = fileInfo.getPath();
 		if(fileInfo.isDir() && !path.endsWith(Constants.defaultSeparator))
@@ -37,7 +56,14 @@ public final class FolderInfo extends GenericResponse {
 	}
 
 	@Override
-	public String toString() {
-		return serialize(folderItems);
+	public void write(HttpServletResponse resp) throws IOException {
+		if(totalCount >= 0)
+			resp.setIntHeader(TOTAL_COUNT_HEADER, totalCount);
+		super.write(resp);
+	}
+
+	@Override
+	protected Object getSerializationObject() {
+		return folderItems;
 	}
 }
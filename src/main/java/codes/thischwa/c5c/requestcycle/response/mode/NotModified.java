@@ -0,0 +1,44 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * The response to a conditional request of a download, a preview or a thumbnail, if the client has the current
+ * content already: the status 304 with the validators and without content.
+ */
+public final class NotModified extends GenericResponse {
+
+	private String etag;
+
+	private long lastModified;
+
+	public NotModified(FilemanagerAction mode, String etag, long lastModified) {
+		super(mode);
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	@Override
+	@JsonIgnore
+	public void write(HttpServletResponse resp) throws IOException {
+		resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		writeValidators(resp, etag, lastModified);
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.FileNameMap;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.BinaryResponse;
+import codes.thischwa.c5c.util.ByteRange;
+
+/**
+ * Partial content of a download or a preview, it's the response to a request with a 'Range' header. A single range
+ * is sent as it is, several ranges are sent as 'multipart/byteranges'. If none of the ranges could be satisfied, the
+ * status 416 is sent without content.
+ */
+public final class PartialContent extends BinaryResponse {
+
+	private static final Charset ascii = Charset.forName("US-ASCII");
+
+	private static FileNameMap contentTypes = URLConnection.getFileNameMap();
+
+	private String fullPath;
+
+	private long totalLength;
+
+	private String etag;
+
+	private long lastModified;
+
+	private List<ByteRange> ranges;
+
+	private List<InputStream> parts;
+
+	private Path file;
+
+	/** The boundary of the parts, if there are several ranges. */
+	private String boundary = UUID.randomUUID().toString().replace("-", "");
+
+	/**
+	 * Instantiates the partial content.
+	 *
+	 * @param mode
+	 *            {@link FilemanagerAction#DOWNLOAD} or {@link FilemanagerAction#PREVIEW}
+	 * @param fullPath
+	 *            the path of the file
+	 * @param totalLength
+	 *            the length of the whole file
+	 * @param etag
+	 *            the entity tag of the file, or <code>null</code> if it's unknown
+	 * @param lastModified
+	 *            the last-modified time of the file in milliseconds, 0 if it's unknown
+	 * @param ranges
+	 *            the ranges to send, if it's empty the ranges couldn't be satisfied
+	 * @param parts
+	 *            the streams of the ranges in the same order, they are closed after writing
+	 * @param file
+	 *            the local file of the parts, or <code>null</code> if it isn't a local file
+	 */
+	public PartialContent(FilemanagerAction mode, String fullPath, long totalLength, String etag, long lastModified, List<ByteRange> ranges,
+			List<InputStream> parts, Path file) {
+		super(mode);
+		this.fullPath = fullPath;
+		this.totalLength = totalLength;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.ranges = ranges;
+		this.parts = parts;
+		this.file = file;
+	}
+
+	@Override
+	protected void writeHeaders(HttpServletResponse resp) {
+		writeRangeHeaders(resp, etag, lastModified);
+		if(ranges.isEmpty()) {
+			resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			resp.setHeader("Content-Range", String.format("bytes */%d", totalLength));
+			return;
+		}
+		resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		if(getMode() == FilemanagerAction.DOWNLOAD)
+			resp.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", FilenameUtils.getName(fullPath)));
+		if(ranges.size() == 1) {
+			ByteRange range = ranges.get(0);
+			resp.setHeader("Content-Type", getContentType());
+			resp.setHeader("Content-Range", range.toContentRange(totalLength));
+			resp.setHeader("Content-Length", String.valueOf(range.getLength()));
+		} else {
+			long length = buildEnd().length;
+			for(int i = 0; i < ranges.size(); i++)
+				length += buildPartHeader(i).length + ranges.get(i).getLength();
+			resp.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+			resp.setHeader("Content-Length", String.valueOf(length));
+		}
+	}
+
+	@Override
+	protected void writeBody(HttpServletResponse resp) throws IOException {
+		try {
+			if(ranges.size() == 1) {
+				ByteRange range = ranges.get(0);
+				writeContent(resp, parts.get(0), file, range.getStart(), range.getLength());
+			} else if(ranges.size() > 1) {
+				OutputStream out = resp.getOutputStream();
+				for(int i = 0; i < ranges.size(); i++) {
+					ByteRange range = ranges.get(i);
+					out.write(buildPartHeader(i));
+					// the parts are written by the servlet, the container can send one file only
+					writeContent(resp, parts.get(i), null, range.getStart(), range.getLength());
+				}
+				out.write(buildEnd());
+			}
+		} finally {
+			for(InputStream in : parts)
+				IOUtils.closeQuietly(in);
+		}
+	}
+
+	@Override
+	protected InputStream getBody() {
+		if(ranges.isEmpty())
+			return null;
+		// the streams of the local file are positioned at the start of their range, but not limited to its end
+		if(ranges.size() == 1)
+			return new BoundedInputStream(parts.get(0), ranges.get(0).getLength());
+		List<InputStream> streams = new ArrayList<>(2 * ranges.size() + 1);
+		for(int i = 0; i < ranges.size(); i++) {
+			streams.add(new ByteArrayInputStream(buildPartHeader(i)));
+			streams.add(new BoundedInputStream(parts.get(i), ranges.get(i).getLength()));
+		}
+		streams.add(new ByteArrayInputStream(buildEnd()));
+		return new SequenceInputStream(Collections.enumeration(streams));
+	}
+
+	@Override
+	protected Path getFile() {
+		// only a single range could be sent by the container
+		return (ranges.size() == 1) ? file : null;
+	}
+
+	private byte[] buildPartHeader(int index) {
+		return String.format("\r\n--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n", boundary, getContentType(),
+				ranges.get(index).toContentRange(totalLength)).getBytes(ascii);
+	}
+
+	private byte[] buildEnd() {
+		return String.format("\r\n--%s--\r\n", boundary).getBytes(ascii);
+	}
+
+	private String getContentType() {
+		String contentType = (getMode() == FilemanagerAction.DOWNLOAD) ? "application/x-download" : contentTypes.getContentTypeFor(fullPath);
+		return (contentType == null) ? "application/octet-stream" : contentType;
+	}
+}
@@ -14,20 +14,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.FileNameMap;
 import java.net.URLConnection;
+import java.nio.file.Path;
 
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
-
 import codes.thischwa.c5c.FilemanagerAction;
-import codes.thischwa.c5c.requestcycle.response.GenericResponse;
-
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import codes.thischwa.c5c.requestcycle.response.BinaryResponse;
 
 /**
  * Holds the data of a Preview response.
  */
-public final class Prieview extends GenericResponse {
+public final class Prieview extends BinaryResponse {
 
 	private String fullPath;
 	
@@ -35,21 +32,52 @@ public final class Prieview extends GenericResponse {
 	
 	private InputStream in;
 
+	private Path file;
+
+	private String etag;
+
+	private long lastModified;
+
 	private static FileNameMap contentTypes = URLConnection.getFileNameMap();
 
 	public Prieview(String fullPath, long contentLength, InputStream in) {
+		this(fullPath, contentLength, in, null, null, 0);
+	}
+
+	public Prieview(String fullPath, long contentLength, InputStream in, Path file, String etag, long lastModified) {
 		super(FilemanagerAction.PREVIEW);
 		this.fullPath = fullPath;
 		this.contentLength = contentLength;
 		this.in = in;
+		this.file = file;
+		this.etag = etag;
+		this.lastModified = lastModified;
 	}
 	
 	@Override
-	@JsonIgnore
-	public void write(HttpServletResponse resp) throws IOException {
+	protected void writeHeaders(HttpServletResponse resp) {
 		String contentType = contentTypes.getContentTypeFor(fullPath);
 		resp.setHeader("Content-Type", contentType);
 		resp.setHeader("Content-Length", String.valueOf(contentLength));
-		IOUtils.copy(in, resp.getOutputStream());
+		// only an unscaled local file could be requested in ranges
+		if(file != null)
+			writeRangeHeaders(resp, etag, lastModified);
+		else
+			writeValidators(resp, etag, lastModified);
+	}
+
+	@Override
+	protected void writeBody(HttpServletResponse resp) throws IOException {
+		writeContent(resp, in, file, contentLength);
+	}
+
+	@Override
+	protected InputStream getBody() {
+		return in;
+	}
+
+	@Override
+	protected Path getFile() {
+		return file;
 	}
 }
@@ -20,14 +20,12 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 
 import codes.thischwa.c5c.FilemanagerAction;
-import codes.thischwa.c5c.requestcycle.response.GenericResponse;
-
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import codes.thischwa.c5c.requestcycle.response.BinaryResponse;
 
 /**
  * Extra mode for show thumbnails. It's NOT defined in the regular request-cycle of the filemanager.
  */
-public final class ShowThumbnail extends GenericResponse {
+public final class ShowThumbnail extends BinaryResponse {
 
 	private String fullPath;
 	
@@ -35,21 +33,45 @@ public final class ShowThumbnail extends GenericResponse {
 	
 	private InputStream in;
 
+	private String etag;
+
+	private long lastModified;
+
 	private static FileNameMap contentTypes = URLConnection.getFileNameMap();
 
 	public ShowThumbnail(String fullPath, long contentLength, InputStream in) {
+		this(fullPath, contentLength, in, null, 0);
+	}
+
+	public ShowThumbnail(String fullPath, long contentLength, InputStream in, String etag, long lastModified) {
 		super(FilemanagerAction.THUMBNAIL);
 		this.fullPath = fullPath;
 		this.contentLength = contentLength;
 		this.in = in;
+		this.etag = etag;
+		this.lastModified = lastModified;
 	}
 	
 	@Override
-	@JsonIgnore
-	public void write(HttpServletResponse resp) throws IOException {
+	protected void writeHeaders(HttpServletResponse resp) {
 		String contentType = contentTypes.getContentTypeFor(fullPath);
 		resp.setHeader("Content-Type", contentType);
 		resp.setHeader("Content-Length", String.valueOf(contentLength));
-		IOUtils.copy(in, resp.getOutputStream());
+		writeValidators(resp, etag, lastModified);
+	}
+
+	@Override
+	protected void writeBody(HttpServletResponse resp) throws IOException {
+		// the stream could read directly from the memory of the thumbnail cache, which is released by closing it
+		try {
+			IOUtils.copy(in, resp.getOutputStream());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	@Override
+	protected InputStream getBody() {
+		return in;
 	}
 }
@@ -10,6 +10,11 @@
  */
 package codes.thischwa.c5c.requestcycle.response.mode;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+
 import codes.thischwa.c5c.FilemanagerAction;
 
 
@@ -31,4 +36,11 @@ public final class UploadFile extends GenericPost {
 		String jsonStr = super.toString();
 		return String.format("<textarea>%s</textarea>", jsonStr);
 	}
+
+	@Override
+	public void write(OutputStream out, String encoding) throws IOException {
+		IOUtils.write("<textarea>", out, encoding);
+		super.write(out, encoding);
+		IOUtils.write("</textarea>", out, encoding);
+	}
 }
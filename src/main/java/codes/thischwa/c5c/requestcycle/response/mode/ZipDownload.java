@@ -0,0 +1,73 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.ZipOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Holds the data of a ZIP download of folders and files. The archive is streamed: the entries are written to the
+ * response while they are read, there isn't a temporary file and the length of the response is unknown. Entries
+ * larger than 4 GB are written in the ZIP64 format.
+ */
+public final class ZipDownload extends GenericResponse {
+
+	private static final int bufferSize = 64 * 1024;
+
+	private String fileName;
+
+	private EntryWriter entryWriter;
+
+	/**
+	 * Writes the entries of the archive.
+	 */
+	public interface EntryWriter {
+
+		/**
+		 * Writes all entries to the archive, the archive is finished by the caller.
+		 *
+		 * @param zos
+		 *            the archive
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		void writeEntries(ZipOutputStream zos) throws IOException;
+	}
+
+	public ZipDownload(String fileName, EntryWriter entryWriter) {
+		super(FilemanagerAction.ZIP);
+		this.fileName = fileName;
+		this.entryWriter = entryWriter;
+	}
+
+	@Override
+	@JsonIgnore
+	public void write(HttpServletResponse resp) throws IOException {
+		resp.setHeader("Content-Type", "application/zip");
+		resp.setHeader("Content-Transfer-Encoding", "Binary");
+		resp.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", fileName));
+		// the deflater writes small chunks, so they are collected before they are passed to the container
+		ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(resp.getOutputStream(), bufferSize),
+				Charset.forName("UTF-8"));
+		entryWriter.writeEntries(zos);
+		zos.finish();
+		zos.flush();
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A range of bytes of a 'Range' header (RFC 7233), the start and the end are inclusive. The 'If-Range' header is
+ * evaluated by {@link HttpValidators}.
+ */
+public final class ByteRange {
+
+	/** The max. number of ranges of one request, more of them are ignored and the whole content is sent. */
+	public static final int MAX_RANGES = 16;
+
+	private static final String unit = "bytes=";
+
+	private final long start;
+
+	private final long end;
+
+	public ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * Builds the value of the 'Content-Range' header of this range.
+	 *
+	 * @param total
+	 *            the length of the whole content
+	 * @return the value of the header, e.g. <code>bytes 0-499/1234</code>
+	 */
+	public String toContentRange(long total) {
+		return String.format("bytes %d-%d/%d", start, end, total);
+	}
+
+	/**
+	 * Parses a 'Range' header. The ranges are returned in the order of the header, the ends are limited to the length
+	 * of the content. Ranges which can't be satisfied are dropped.
+	 *
+	 * @param header
+	 *            the value of the header, it could be <code>null</code>
+	 * @param length
+	 *            the length of the whole content
+	 * @return the ranges to send, an empty list if none of them could be satisfied or <code>null</code> if the header
+	 *         is missing or invalid or has more than {@link #MAX_RANGES} ranges: the whole content has to be sent then
+	 */
+	public static List<ByteRange> parse(String header, long length) {
+		if(header == null || length < 0 || !header.regionMatches(true, 0, unit, 0, unit.length()))
+			return null;
+		String[] specs = header.substring(unit.length()).split(",");
+		if(specs.length > MAX_RANGES)
+			return null;
+		List<ByteRange> ranges = new ArrayList<>(specs.length);
+		for(String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if(dash < 0)
+				return null;
+			try {
+				String first = spec.substring(0, dash).trim();
+				String last = spec.substring(dash + 1).trim();
+				if(first.isEmpty()) {
+					// suffix range: the last n bytes
+					long suffix = Long.parseLong(last);
+					if(suffix < 0)
+						return null;
+					if(suffix > 0 && length > 0)
+						ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+				} else {
+					long start = Long.parseLong(first);
+					long end = (last.isEmpty()) ? Long.MAX_VALUE : Long.parseLong(last);
+					if(start < 0 || end < start)
+						return null;
+					if(start < length)
+						ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return (ranges.isEmpty()) ? Collections.<ByteRange> emptyList() : ranges;
+	}
+}
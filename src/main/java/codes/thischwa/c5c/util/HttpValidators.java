@@ -0,0 +1,136 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Helpers for the validators of a file (RFC 7232): the entity tag and the last-modified time. They are evaluated by
+ * the conditional headers 'If-None-Match', 'If-Modified-Since' and 'If-Range'. The validators are built by the
+ * attributes of the file only, so a conditional request could be answered without reading the file.
+ */
+public final class HttpValidators {
+
+	private HttpValidators() {
+	}
+
+	/**
+	 * Builds a strong entity tag of a file by its size and its last-modified time.
+	 *
+	 * @param size
+	 *            the size of the file
+	 * @param lastModified
+	 *            the last-modified time of the file in milliseconds
+	 * @return the entity tag, including the quotes
+	 */
+	public static String buildETag(long size, long lastModified) {
+		return buildETag(size, lastModified, null);
+	}
+
+	/**
+	 * Builds a strong entity tag of a file or of a content derived from it.
+	 *
+	 * @param size
+	 *            the size of the file
+	 * @param lastModified
+	 *            the last-modified time of the file in milliseconds
+	 * @param variant
+	 *            identifies the content derived from the file, e.g. the dimension of a thumbnail, it's empty or
+	 *            <code>null</code> for the file itself
+	 * @return the entity tag, including the quotes
+	 */
+	public static String buildETag(long size, long lastModified, String variant) {
+		if(StringUtils.isNullOrEmpty(variant))
+			return String.format("\"%x-%x\"", size, lastModified);
+		return String.format("\"%x-%x-%s\"", size, lastModified, variant);
+	}
+
+	/**
+	 * Evaluates the headers 'If-None-Match' and 'If-Modified-Since' of a GET request. 'If-Modified-Since' is ignored,
+	 * if 'If-None-Match' is set.
+	 *
+	 * @param ifNoneMatch
+	 *            the value of the 'If-None-Match' header, it could be <code>null</code>
+	 * @param ifModifiedSince
+	 *            the value of the 'If-Modified-Since' header, it could be <code>null</code>
+	 * @param etag
+	 *            the entity tag of the content
+	 * @param lastModified
+	 *            the last-modified time of the content in milliseconds, 0 if it's unknown
+	 * @return <code>true</code> if the client has the current content already, the status 304 has to be sent then
+	 */
+	public static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String etag, long lastModified) {
+		if(ifNoneMatch != null) {
+			// weak comparison, a list of tags or '*'
+			String tag = stripWeak(etag);
+			for(String candidate : ifNoneMatch.split(",")) {
+				candidate = candidate.trim();
+				if(candidate.equals("*") || stripWeak(candidate).equals(tag))
+					return true;
+			}
+			return false;
+		}
+		if(ifModifiedSince == null || lastModified <= 0)
+			return false;
+		Date since = parseDate(ifModifiedSince);
+		// the HTTP date has a precision of seconds
+		return since != null && lastModified / 1000 * 1000 <= since.getTime();
+	}
+
+	/**
+	 * Evaluates an 'If-Range' header: the ranges are sent only, if the file hasn't changed since the client has
+	 * received a part of it.
+	 *
+	 * @param header
+	 *            the value of the header, it could be <code>null</code>
+	 * @param etag
+	 *            the entity tag of the file
+	 * @param lastModified
+	 *            the last-modified time of the file in milliseconds, 0 if it's unknown
+	 * @return <code>true</code> if there isn't a header or it matches the entity tag or the last-modified time of the
+	 *         file, otherwise <code>false</code>: the whole content has to be sent then
+	 */
+	public static boolean isIfRangeSatisfied(String header, String etag, long lastModified) {
+		if(header == null)
+			return true;
+		header = header.trim();
+		if(lastModified <= 0)
+			return false;
+		// strong comparison, a weak tag never matches
+		if(header.startsWith("\"") || header.startsWith("W/"))
+			return header.equals(etag);
+		Date date = parseDate(header);
+		return date != null && date.getTime() == lastModified / 1000 * 1000;
+	}
+
+	private static String stripWeak(String tag) {
+		return (tag.startsWith("W/")) ? tag.substring(2) : tag;
+	}
+
+	/**
+	 * Parses a date of the format of RFC 1123, the obsolete formats aren't supported.
+	 *
+	 * @return the date, or <code>null</code> if it isn't valid
+	 */
+	private static Date parseDate(String value) {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			return format.parse(value.trim());
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import codes.thischwa.c5c.Constants;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Registry of pre-built {@link ObjectWriter}s and {@link ObjectReader}s, one per class. They are thread-safe and hold
+ * the serializers and deserializers of their class, so the introspection of Jackson is done only once per class.<br/>
+ * <br/>
+ * There are two kinds of writers:
+ * <ul>
+ * <li>response writers: the slashes are escaped to use the JSON in textareas, and the target isn't closed, so the JSON
+ * could be wrapped</li>
+ * <li>plain writers: the default settings of Jackson, e.g. for the configuration of the filemanager</li>
+ * </ul>
+ * The registry could be warmed up by {@link #warmUp(Class...)}, so the first requests don't pay for the introspection.
+ */
+public final class JacksonRegistry {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static final ObjectMapper responseMapper = buildResponseMapper();
+
+	private static final ConcurrentMap<Class<?>, ObjectWriter> responseWriters = new ConcurrentHashMap<>();
+
+	private static final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+	private static final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+	private JacksonRegistry() {
+	}
+
+	private static ObjectMapper buildResponseMapper() {
+		ObjectMapper responseMapper = new ObjectMapper();
+		// the target must not be closed, inherited responses could wrap the JSON
+		responseMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		responseMapper.getFactory().setCharacterEscapes(new SlashEscapes());
+		return responseMapper;
+	}
+
+	/**
+	 * Gets the writer for responses of the desired class.
+	 *
+	 * @param type
+	 *            the class of the objects to write
+	 * @return the writer for responses
+	 */
+	public static ObjectWriter getResponseWriter(Class<?> type) {
+		ObjectWriter writer = responseWriters.get(type);
+		if(writer == null) {
+			writer = responseMapper.writerFor(type);
+			ObjectWriter existing = responseWriters.putIfAbsent(type, writer);
+			if(existing != null)
+				writer = existing;
+		}
+		return writer;
+	}
+
+	/**
+	 * Gets the plain writer for the desired class.
+	 *
+	 * @param type
+	 *            the class of the objects to write
+	 * @return the plain writer
+	 */
+	public static ObjectWriter getWriter(Class<?> type) {
+		ObjectWriter writer = writers.get(type);
+		if(writer == null) {
+			writer = mapper.writerFor(type);
+			ObjectWriter existing = writers.putIfAbsent(type, writer);
+			if(existing != null)
+				writer = existing;
+		}
+		return writer;
+	}
+
+	/**
+	 * Gets the reader for the desired class.
+	 *
+	 * @param type
+	 *            the class of the objects to read
+	 * @return the reader
+	 */
+	public static ObjectReader getReader(Class<?> type) {
+		ObjectReader reader = readers.get(type);
+		if(reader == null) {
+			reader = mapper.reader(type);
+			ObjectReader existing = readers.putIfAbsent(type, reader);
+			if(existing != null)
+				reader = existing;
+		}
+		return reader;
+	}
+
+	/**
+	 * Builds the response writers of the desired classes in advance.
+	 *
+	 * @param responseTypes
+	 *            the classes of the responses
+	 */
+	public static void warmUp(Class<?>... responseTypes) {
+		for(Class<?> type : responseTypes)
+			getResponseWriter(type);
+	}
+
+	/**
+	 * Escapes the slashes of the JSON, all other characters are escaped like the standard.
+	 */
+	private static class SlashEscapes extends CharacterEscapes {
+		private static final long serialVersionUID = 1L;
+
+		private static final SerializableString escapedSlash = new SerializedString("\\".concat(Constants.defaultSeparator));
+
+		private final int[] asciiEscapes;
+
+		SlashEscapes() {
+			asciiEscapes = CharacterEscapes.standardAsciiEscapesForJSON();
+			asciiEscapes[Constants.defaultSeparator.charAt(0)] = CharacterEscapes.ESCAPE_CUSTOM;
+		}
+
+		@Override
+		public int[] getEscapeCodesForAscii() {
+			return asciiEscapes;
+		}
+
+		@Override
+		public SerializableString getEscapeSequence(int ch) {
+			// it's called for non-ascii characters too, they aren't escaped
+			return (ch == Constants.defaultSeparator.charAt(0)) ? escapedSlash : null;
+		}
+	}
+}
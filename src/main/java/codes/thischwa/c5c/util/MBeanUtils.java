@@ -0,0 +1,63 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Some static helper methods to register MBeans at the platform MBean server. Errors are logged only, because JMX is
+ * optional for the connector.
+ */
+public class MBeanUtils {
+	private static final Logger logger = LoggerFactory.getLogger(MBeanUtils.class);
+
+	/**
+	 * Registers an MBean, if there isn't one registered with the same name.
+	 *
+	 * @param mbean
+	 *            the MBean
+	 * @param objectName
+	 *            the object name of the MBean
+	 */
+	public static void register(Object mbean, String objectName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(objectName);
+			if(!server.isRegistered(name))
+				server.registerMBean(mbean, name);
+		} catch (Exception e) {
+			logger.warn(String.format("The MBean %s couldn't be registered.", objectName), e);
+		}
+	}
+
+	/**
+	 * Unregisters an MBean, if it is registered.
+	 *
+	 * @param objectName
+	 *            the object name of the MBean
+	 */
+	public static void unregister(String objectName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(objectName);
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+		} catch (Exception e) {
+			logger.warn(String.format("The MBean %s couldn't be unregistered.", objectName), e);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent computations of the same key: the first caller computes the value in its own thread, all
+ * callers arriving in the meantime wait for its result instead of computing it again. After the computation is
+ * finished, the next call of the key starts a new one, so nothing is cached here.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the computed values
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Computes the value of the key, or waits for the computation which is already in flight.
+	 *
+	 * @param key
+	 *            the key of the computation
+	 * @param task
+	 *            the computation, it's called only if there isn't one in flight
+	 * @param timeoutMillis
+	 *            the max. time to wait for a computation of another caller in milliseconds, if it is less than 1 the
+	 *            caller waits without a limit
+	 * @return the computed value
+	 * @throws ExecutionException
+	 *             if the computation has thrown an exception, it's the cause
+	 * @throws TimeoutException
+	 *             if the wait for the computation of another caller timed out
+	 * @throws InterruptedException
+	 *             if the caller is interrupted while waiting
+	 */
+	public V execute(K key, Callable<V> task, long timeoutMillis) throws ExecutionException, TimeoutException,
+			InterruptedException {
+		FutureTask<V> future = new FutureTask<>(task);
+		FutureTask<V> existing = inFlight.putIfAbsent(key, future);
+		if(existing == null) {
+			try {
+				future.run();
+			} finally {
+				inFlight.remove(key, future);
+			}
+			return future.get();
+		}
+		return (timeoutMillis > 0) ? existing.get(timeoutMillis, TimeUnit.MILLISECONDS) : existing.get();
+	}
+
+	/**
+	 * Returns the number of the computations in flight.
+	 *
+	 * @return the number of the computations in flight
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+public class DimensionCacheTest {
+
+	@Test
+	public void testKey() {
+		DimensionCache cache = new DimensionCache(10, null);
+		cache.put("/data/pic.png", 1000L, 200L, new Dimension(110, 70));
+		assertEquals(new Dimension(110, 70), cache.get("/data/pic.png", 1000L, 200L));
+		assertNull(cache.get("/data/pic.png", 1001L, 200L));
+		assertNull(cache.get("/data/pic.png", 1000L, 201L));
+		assertNull(cache.get("/data/other.png", 1000L, 200L));
+	}
+
+	@Test
+	public void testEviction() {
+		DimensionCache cache = new DimensionCache(2, null);
+		cache.put("/a.png", 1L, 1L, new Dimension(1, 1));
+		cache.put("/b.png", 1L, 1L, new Dimension(2, 2));
+		cache.get("/a.png", 1L, 1L);
+		cache.put("/c.png", 1L, 1L, new Dimension(3, 3));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("/a.png", 1L, 1L));
+		assertNull(cache.get("/b.png", 1L, 1L));
+	}
+
+	@Test
+	public void testInvalidate() {
+		DimensionCache cache = new DimensionCache(10, null);
+		cache.put("/data/folder/a.png", 1L, 1L, new Dimension(1, 1));
+		cache.put("/data/folder/sub/b.png", 1L, 1L, new Dimension(1, 1));
+		cache.put("/data/folder2/c.png", 1L, 1L, new Dimension(1, 1));
+		cache.invalidate("/data/folder/");
+		assertNull(cache.get("/data/folder/a.png", 1L, 1L));
+		assertNull(cache.get("/data/folder/sub/b.png", 1L, 1L));
+		assertNotNull(cache.get("/data/folder2/c.png", 1L, 1L));
+		cache.invalidate("/data/folder2/c.png");
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testDisabled() {
+		DimensionCache cache = new DimensionCache(0, null);
+		cache.put("/a.png", 1L, 1L, new Dimension(1, 1));
+		assertNull(cache.get("/a.png", 1L, 1L));
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		Path dir = Files.createTempDirectory("c5c-dim");
+		Path index = dir.resolve("dimensions.idx");
+		try {
+			DimensionCache cache = new DimensionCache(10, index);
+			cache.put("/data/a b.png", 1000L, 200L, new Dimension(110, 70));
+			cache.save();
+			assertTrue(Files.exists(index));
+
+			DimensionCache loaded = new DimensionCache(10, index);
+			loaded.load();
+			assertEquals(new Dimension(110, 70), loaded.get("/data/a b.png", 1000L, 200L));
+		} finally {
+			Files.deleteIfExists(index);
+			Files.deleteIfExists(dir);
+		}
+	}
+}
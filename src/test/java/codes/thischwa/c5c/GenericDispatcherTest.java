@@ -0,0 +1,80 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.filemanager.Options.FILE_SORTING;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+public class GenericDispatcherTest {
+
+	private GenericDispatcher dispatcher = new GenericDispatcher(null) {
+		@Override
+		GenericResponse doRequest() {
+			return null;
+		}
+	};
+
+	private Set<FileProperties> props;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(42);
+		props = new HashSet<>();
+		for(int i = 0; i < 500; i++) {
+			// few distinct dates and names which differ just in case to check the tie-breaking
+			Date modified = new Date(random.nextInt(10) * 1000L);
+			String name = ((i % 2 == 0) ? "Name" : "name") + (i / 2) % 100 + "-" + i;
+			if(i % 7 == 0)
+				props.add(new FileProperties(name, false, modified));
+			else
+				props.add(new FileProperties(name, false, i, modified));
+		}
+	}
+
+	@Test
+	public void testSelectEqualsSort() {
+		for(FILE_SORTING sorting : FILE_SORTING.values()) {
+			List<FileProperties> sorted = new ArrayList<>(props);
+			dispatcher.sortFileProperties(sorted, sorting);
+
+			assertEquals(sorting.name(), sorted, dispatcher.selectFileProperties(props, sorting, 0, 0));
+			assertEquals(sorting.name(), sorted.subList(0, 10), dispatcher.selectFileProperties(props, sorting, 0, 10));
+			assertEquals(sorting.name(), sorted.subList(120, 170), dispatcher.selectFileProperties(props, sorting, 120, 50));
+			assertEquals(sorting.name(), sorted.subList(490, 500), dispatcher.selectFileProperties(props, sorting, 490, 50));
+			assertEquals(sorting.name(), sorted.subList(300, 500), dispatcher.selectFileProperties(props, sorting, 300, 0));
+			assertTrue(sorting.name(), dispatcher.selectFileProperties(props, sorting, 500, 10).isEmpty());
+		}
+	}
+
+	@Test
+	public void testTypeGrouping() {
+		List<FileProperties> sorted = dispatcher.selectFileProperties(props, FILE_SORTING.TYPE_ASC, 0, 0);
+		assertTrue(sorted.get(0).isDir());
+		assertFalse(sorted.get(sorted.size() - 1).isDir());
+
+		sorted = dispatcher.selectFileProperties(props, FILE_SORTING.DEFAULT, 0, 0);
+		assertFalse(sorted.get(0).isDir());
+		assertTrue(sorted.get(sorted.size() - 1).isDir());
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+
+import org.junit.Test;
+
+import codes.thischwa.c5c.exception.ServiceUnavailableException;
+
+public class ImageProcessingSchedulerTest {
+
+	@Test
+	public void testEstimateCost() {
+		assertEquals(2 * 128 * 128 * 4 + 64 * 64 * 4, ImageProcessingScheduler.estimateCost(new Dimension(128, 128), new Dimension(64, 64)));
+	}
+
+	@Test
+	public void testAdmission() throws Exception {
+		ImageProcessingScheduler scheduler = new ImageProcessingScheduler(100, 0, 0);
+		ImageProcessingScheduler.Permit p1 = scheduler.acquire(60, FilemanagerAction.THUMBNAIL);
+		ImageProcessingScheduler.Permit p2 = scheduler.acquire(40, FilemanagerAction.THUMBNAIL);
+		assertEquals(100, scheduler.getUsedBytes());
+		assertEquals(2, scheduler.getRunning());
+		try {
+			scheduler.acquire(1, FilemanagerAction.THUMBNAIL);
+			fail("ServiceUnavailableException expected");
+		} catch (ServiceUnavailableException e) {
+			assertEquals(FilemanagerAction.THUMBNAIL, e.getMode());
+			assertTrue(e.getRetryAfter() > 0);
+		}
+		assertEquals(1, scheduler.getRejectedCount());
+		p1.release();
+		p1.release();
+		assertEquals(40, scheduler.getUsedBytes());
+		p2.release();
+
+		// larger than the budget, but nothing else is running
+		scheduler.acquire(1000, FilemanagerAction.PREVIEW).release();
+		assertEquals(0, scheduler.getUsedBytes());
+		assertEquals(3, scheduler.getAdmittedCount());
+	}
+
+	@Test
+	public void testQueue() throws Exception {
+		final ImageProcessingScheduler scheduler = new ImageProcessingScheduler(100, 1, 5000);
+		final ImageProcessingScheduler.Permit permit = scheduler.acquire(100, FilemanagerAction.THUMBNAIL);
+		Thread releaser = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while(scheduler.getQueueDepth() == 0)
+						Thread.sleep(10);
+				} catch (InterruptedException e) {
+					return;
+				}
+				permit.release();
+			}
+		};
+		releaser.start();
+		scheduler.acquire(50, FilemanagerAction.THUMBNAIL).release();
+		releaser.join();
+		assertEquals(0, scheduler.getQueueDepth());
+		assertEquals(0, scheduler.getRejectedCount());
+	}
+
+	@Test(expected = ServiceUnavailableException.class)
+	public void testTimeout() throws Exception {
+		ImageProcessingScheduler scheduler = new ImageProcessingScheduler(100, 1, 50);
+		scheduler.acquire(100, FilemanagerAction.THUMBNAIL);
+		scheduler.acquire(1, FilemanagerAction.THUMBNAIL);
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		ImageProcessingScheduler scheduler = new ImageProcessingScheduler(0, 0, 0);
+		scheduler.acquire(Long.MAX_VALUE, FilemanagerAction.THUMBNAIL).release();
+		assertEquals(0, scheduler.getRunning());
+	}
+}
@@ -65,10 +65,59 @@ public class RootGetRequestTest extends GenericRequestTest {
 		HttpTester response = new HttpTester();
 		response.parse(responseStr);
 		
+		assertEquals(200, response.getStatus());
+		String actual = cleanResponse(response.getContent());
+		String expected = cleanResponse("{\"\\/filemanager\\/userfiles\\/pic01.png\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"png\",\"Filename\":\"pic01.png\",\"Path\":\"\\/filemanager\\/userfiles\\/pic01.png\",\"Preview\":\"\\/filemanager\\/connectors\\/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":2250,\"Width\":null},\"Protected\":0},\"\\/filemanager\\/userfiles\\/folder\\/\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"dir\",\"Filename\":\"folder\",\"Path\":\"\\/filemanager\\/userfiles\\/folder\\/\",\"Preview\":\"\\/filemanager\\/images\\/fileicons\\/_Open.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":null,\"Width\":null},\"Protected\":0}}");
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testGetFolderWithSize() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder&showThumbs=true&getsize=true&time=241");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
 		assertEquals(200, response.getStatus());
 		String actual = cleanResponse(response.getContent());
 		String expected = cleanResponse("{\"\\/filemanager\\/userfiles\\/pic01.png\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"png\",\"Filename\":\"pic01.png\",\"Path\":\"\\/filemanager\\/userfiles\\/pic01.png\",\"Preview\":\"\\/filemanager\\/connectors\\/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png\",\"Properties\":{\"Date Created\":null,\"Height\":70,\"Size\":2250,\"Width\":110},\"Protected\":0},\"\\/filemanager\\/userfiles\\/folder\\/\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"dir\",\"Filename\":\"folder\",\"Path\":\"\\/filemanager\\/userfiles\\/folder\\/\",\"Preview\":\"\\/filemanager\\/images\\/fileicons\\/_Open.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":null,\"Width\":null},\"Protected\":0}}");
 		assertEquals(expected, actual);
 	}
 
+
+	@Test
+	public void testGetFolderPaged() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder&showThumbs=true&offset=1&limit=1&time=241");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(200, response.getStatus());
+		assertEquals("2", response.getHeader("X-Total-Count"));
+		String actual = cleanResponse(response.getContent());
+		String expected = cleanResponse("{\"\\/filemanager\\/userfiles\\/folder\\/\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"dir\",\"Filename\":\"folder\",\"Path\":\"\\/filemanager\\/userfiles\\/folder\\/\",\"Preview\":\"\\/filemanager\\/images\\/fileicons\\/_Open.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":null,\"Width\":null},\"Protected\":0}}");
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testGetFolderInvalidPaging() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder&limit=-1");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(200, response.getStatus());
+		assertTrue(response.getContent().contains("\"Code\":1000"));
+		assertTrue(response.getContent().contains("'limit'"));
+	}
+
 }
@@ -0,0 +1,133 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThumbnailCacheTest {
+
+	private static final Dimension dim = new Dimension(64, 64);
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("c5c-thumb");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void testKey() throws Exception {
+		ThumbnailCache cache = new ThumbnailCache(dir, 1000);
+		cache.put("/data/pic.png", 1000L, 200L, dim, new byte[] { 1, 2, 3 });
+		Path cached = cache.get("/data/pic.png", 1000L, 200L, dim);
+		assertNotNull(cached);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(cached));
+		assertNull(cache.get("/data/pic.png", 1001L, 200L, dim));
+		assertNull(cache.get("/data/pic.png", 1000L, 201L, dim));
+		assertNull(cache.get("/data/pic.png", 1000L, 200L, new Dimension(32, 32)));
+		assertNull(cache.get("/data/other.png", 1000L, 200L, dim));
+	}
+
+	@Test
+	public void testEviction() {
+		ThumbnailCache cache = new ThumbnailCache(dir, 20);
+		cache.put("/a.png", 1L, 1L, dim, new byte[8]);
+		cache.put("/b.png", 1L, 1L, dim, new byte[8]);
+		Path a = cache.get("/a.png", 1L, 1L, dim);
+		Path b = cache.get("/b.png", 1L, 1L, dim);
+		cache.get("/a.png", 1L, 1L, dim);
+		cache.put("/c.png", 1L, 1L, dim, new byte[8]);
+		assertEquals(2, cache.size());
+		assertEquals(16, cache.getTotalBytes());
+		assertNotNull(cache.get("/a.png", 1L, 1L, dim));
+		assertNull(cache.get("/b.png", 1L, 1L, dim));
+		assertTrue(Files.exists(a));
+		assertFalse(Files.exists(b));
+	}
+
+	@Test
+	public void testInvalidate() {
+		ThumbnailCache cache = new ThumbnailCache(dir, 1000);
+		cache.put("/data/folder/a.png", 1L, 1L, dim, new byte[1]);
+		cache.put("/data/folder/sub/b.png", 1L, 1L, dim, new byte[1]);
+		cache.put("/data/folder2/c.png", 1L, 1L, dim, new byte[1]);
+		Path a = cache.get("/data/folder/a.png", 1L, 1L, dim);
+		cache.invalidate("/data/folder/");
+		assertNull(cache.get("/data/folder/a.png", 1L, 1L, dim));
+		assertNull(cache.get("/data/folder/sub/b.png", 1L, 1L, dim));
+		assertNotNull(cache.get("/data/folder2/c.png", 1L, 1L, dim));
+		assertFalse(Files.exists(a));
+		cache.invalidate("/data/folder2/c.png");
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getTotalBytes());
+	}
+
+	@Test
+	public void testDisabled() {
+		ThumbnailCache cache = new ThumbnailCache(null, 1000);
+		cache.put("/a.png", 1L, 1L, dim, new byte[1]);
+		assertNull(cache.get("/a.png", 1L, 1L, dim));
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		ThumbnailCache cache = new ThumbnailCache(dir, 1000);
+		cache.put("/data/a b.png", 1000L, 200L, dim, new byte[] { 1, 2, 3 });
+		cache.save();
+		Path orphan = Files.write(dir.resolve("orphan.thumb"), new byte[1]);
+
+		ThumbnailCache loaded = new ThumbnailCache(dir, 1000);
+		loaded.load();
+		assertNotNull(loaded.get("/data/a b.png", 1000L, 200L, dim));
+		assertEquals(3, loaded.getTotalBytes());
+		assertFalse(Files.exists(orphan));
+	}
+
+	@Test
+	public void testCrash() throws Exception {
+		ThumbnailCache cache = new ThumbnailCache(dir, 20);
+		cache.put("/data/a.png", 1L, 1L, dim, new byte[8]);
+		cache.save();
+		cache.put("/data/b.png", 1L, 1L, dim, new byte[8]);
+		cache.put("/data/c.png", 1L, 1L, dim, new byte[8]);
+		cache.put("/data/folder/d.png", 1L, 1L, dim, new byte[1]);
+		cache.invalidate("/data/folder");
+		// no save, e.g. the process was killed
+
+		ThumbnailCache loaded = new ThumbnailCache(dir, 20);
+		loaded.load();
+		assertEquals(2, loaded.size());
+		assertEquals(16, loaded.getTotalBytes());
+		assertNull(loaded.get("/data/a.png", 1L, 1L, dim));
+		assertNotNull(loaded.get("/data/b.png", 1L, 1L, dim));
+		assertNotNull(loaded.get("/data/c.png", 1L, 1L, dim));
+		assertNull(loaded.get("/data/folder/d.png", 1L, 1L, dim));
+
+		loaded.invalidate("/data/b.png");
+		assertEquals(1, loaded.size());
+		assertNull(loaded.get("/data/b.png", 1L, 1L, dim));
+		assertNotNull(loaded.get("/data/c.png", 1L, 1L, dim));
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ThumbnailMemoryCacheTest {
+
+	private static final Dimension dim = new Dimension(64, 64);
+
+	@Test
+	public void testRead() throws Exception {
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(64 * 1024);
+		byte[] data = new byte[10000];
+		new Random(1).nextBytes(data);
+		assertNull(cache.get("/data/pic.png", 1000L, 200L, dim));
+		assertTrue(cache.put("/data/pic.png", 1000L, 200L, dim, data));
+		ThumbnailMemoryCache.CachedThumbnail cached = cache.get("/data/pic.png", 1000L, 200L, dim);
+		assertNotNull(cached);
+		assertEquals(data.length, cached.getLength());
+		assertArrayEquals(data, IOUtils.toByteArray(cached));
+		cached.close();
+		assertNull(cache.get("/data/pic.png", 1001L, 200L, dim));
+		assertNull(cache.get("/data/pic.png", 1000L, 200L, new Dimension(32, 32)));
+	}
+
+	@Test
+	public void testAdmission() throws Exception {
+		// room for a single thumbnail
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(8 * 1024);
+		byte[] data = new byte[5000];
+		cache.get("/hot.png", 1L, 1L, dim);
+		assertTrue(cache.put("/hot.png", 1L, 1L, dim, data));
+		cache.get("/hot.png", 1L, 1L, dim).close();
+
+		// requested once only, so it's less frequent than the cached one
+		cache.get("/cold.png", 1L, 1L, dim);
+		assertFalse(cache.put("/cold.png", 1L, 1L, dim, data));
+		ThumbnailMemoryCache.CachedThumbnail hot = cache.get("/hot.png", 1L, 1L, dim);
+		assertNotNull(hot);
+		hot.close();
+
+		for(int i = 0; i < 5; i++)
+			cache.get("/cold.png", 1L, 1L, dim);
+		assertTrue(cache.put("/cold.png", 1L, 1L, dim, data));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testAdmissionOfAllVictims() throws Exception {
+		// room for three small thumbnails or a single large one
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(12 * 1024);
+		byte[] small = new byte[4000];
+		byte[] large = new byte[12000];
+		assertTrue(cache.put("/cold1.png", 1L, 1L, dim, small));
+		assertTrue(cache.put("/cold2.png", 1L, 1L, dim, small));
+		assertTrue(cache.put("/hot.png", 1L, 1L, dim, small));
+		for(int i = 0; i < 5; i++)
+			cache.get("/hot.png", 1L, 1L, dim).close();
+
+		// more frequent than the cold ones, but less than the hot one: nothing may be evicted
+		for(int i = 0; i < 2; i++)
+			cache.get("/large.png", 1L, 1L, dim);
+		assertFalse(cache.put("/large.png", 1L, 1L, dim, large));
+		assertEquals(3, cache.size());
+		for(String name : new String[] { "/cold1.png", "/cold2.png", "/hot.png" }) {
+			ThumbnailMemoryCache.CachedThumbnail cached = cache.get(name, 1L, 1L, dim);
+			assertNotNull(name, cached);
+			cached.close();
+		}
+
+		for(int i = 0; i < 10; i++)
+			cache.get("/large.png", 1L, 1L, dim);
+		assertTrue(cache.put("/large.png", 1L, 1L, dim, large));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testPinnedVictim() throws Exception {
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(8 * 1024);
+		byte[] data = new byte[4000];
+		assertTrue(cache.put("/a.png", 1L, 1L, dim, data));
+		assertTrue(cache.put("/b.png", 1L, 1L, dim, data));
+		ThumbnailMemoryCache.CachedThumbnail pinned = cache.get("/a.png", 1L, 1L, dim);
+		for(int i = 0; i < 5; i++)
+			cache.get("/c.png", 1L, 1L, dim);
+		// the pinned entry doesn't free its chunk, so just the other one is evicted
+		assertTrue(cache.put("/c.png", 1L, 1L, dim, data));
+		assertEquals(2, cache.size());
+		assertNull(cache.get("/b.png", 1L, 1L, dim));
+		pinned.close();
+	}
+
+	@Test
+	public void testPinnedEntry() throws Exception {
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(8 * 1024);
+		byte[] data = new byte[5000];
+		cache.put("/a.png", 1L, 1L, dim, data);
+		ThumbnailMemoryCache.CachedThumbnail cached = cache.get("/a.png", 1L, 1L, dim);
+		cache.invalidate("/a.png");
+		assertEquals(0, cache.size());
+		// the memory isn't released until the stream is closed
+		assertFalse(cache.put("/b.png", 1L, 1L, dim, data));
+		assertEquals(data.length, IOUtils.toByteArray(cached).length);
+		cached.close();
+		assertTrue(cache.put("/b.png", 1L, 1L, dim, data));
+	}
+
+	@Test
+	public void testInvalidate() {
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(64 * 1024);
+		cache.put("/data/folder/a.png", 1L, 1L, dim, new byte[1]);
+		cache.put("/data/folder/sub/b.png", 1L, 1L, dim, new byte[1]);
+		cache.put("/data/folder2/c.png", 1L, 1L, dim, new byte[1]);
+		cache.invalidate("/data/folder/");
+		assertNull(cache.get("/data/folder/a.png", 1L, 1L, dim));
+		assertNull(cache.get("/data/folder/sub/b.png", 1L, 1L, dim));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDisabled() {
+		ThumbnailMemoryCache cache = new ThumbnailMemoryCache(0);
+		assertFalse(cache.isEnabled());
+		assertFalse(cache.put("/a.png", 1L, 1L, dim, new byte[1]));
+		assertNull(cache.get("/a.png", 1L, 1L, dim));
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class ThumbnailPregeneratorTest {
+
+	private static final Dimension dim = new Dimension(64, 64);
+
+	private Path dir;
+
+	private Path image;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("c5c-pregen");
+		image = dir.resolve("exif.jpg");
+		try (InputStream in = getClass().getResourceAsStream("/exif.jpg")) {
+			Files.copy(in, image, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void testPregeneration() throws Exception {
+		LocalConnector connector = new LocalConnector();
+		ThumbnailPregenerator pregenerator = new ThumbnailPregenerator(connector, dim, null, 1, 10);
+		try {
+			assertEquals(0, connector.getThumbnailMemoryCache().size());
+			pregenerator.enqueue(image.toString());
+			long deadline = System.currentTimeMillis() + 10000;
+			while(connector.getThumbnailMemoryCache().size() == 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(20);
+			assertEquals(1, connector.getThumbnailMemoryCache().size());
+		} finally {
+			pregenerator.shutdown();
+		}
+	}
+
+	@Test
+	public void testPreview() throws Exception {
+		final ThumbnailCache previewCache = new ThumbnailCache(dir.resolve("previews"), 10000000);
+		LocalConnector connector = new LocalConnector() {
+			@Override
+			protected ThumbnailCache getPreviewCache() {
+				return previewCache;
+			}
+
+			@Override
+			protected boolean isImageExtension(String ext) {
+				return ext.equals("jpg");
+			}
+		};
+		UserObjectProxy.initDimensionProvider(PropertiesLoader.getDimensionProviderImpl());
+		Dimension previewDim = new Dimension(400, 400);
+		long lastModified = Files.getLastModifiedTime(image).toMillis();
+		long size = Files.size(image);
+		ThumbnailPregenerator pregenerator = new ThumbnailPregenerator(connector, dim, previewDim, 1, 10);
+		try {
+			pregenerator.enqueue(image.toString());
+			long deadline = System.currentTimeMillis() + 10000;
+			while(previewCache.get(image.toString(), lastModified, size, previewDim) == null
+					&& System.currentTimeMillis() < deadline)
+				Thread.sleep(20);
+			assertNotNull(previewCache.get(image.toString(), lastModified, size, previewDim));
+			assertEquals(1, connector.getThumbnailMemoryCache().size());
+		} finally {
+			pregenerator.shutdown();
+		}
+	}
+
+	@Test
+	public void testFullQueue() throws Exception {
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(2);
+		LocalConnector connector = new LocalConnector() {
+			@Override
+			public StreamContent buildThumbnail(String backendPath, Dimension dim) throws C5CException {
+				calls.incrementAndGet();
+				try {
+					blocker.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+				return null;
+			}
+		};
+		// one job is processed, one is waiting, all others are dropped
+		ThumbnailPregenerator pregenerator = new ThumbnailPregenerator(connector, dim, null, 1, 1);
+		try {
+			long start = System.currentTimeMillis();
+			for(int i = 0; i < 5; i++)
+				pregenerator.enqueue(image.toString());
+			assertTrue("enqueue has blocked", System.currentTimeMillis() - start < 5000);
+			blocker.countDown();
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			Thread.sleep(100);
+			assertEquals(2, calls.get());
+		} finally {
+			pregenerator.shutdown();
+		}
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		LocalConnector connector = new LocalConnector();
+		ThumbnailPregenerator pregenerator = new ThumbnailPregenerator(connector, null, null, 1, 10);
+		pregenerator.enqueue(image.toString());
+		pregenerator = new ThumbnailPregenerator(connector, dim, null, 0, 10);
+		pregenerator.enqueue(image.toString());
+		Thread.sleep(100);
+		assertEquals(0, connector.getThumbnailMemoryCache().size());
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class ThumbnailWarmUpTest {
+
+	private static final Dimension dim = new Dimension(64, 64);
+
+	private static final Set<String> imageExtensions = new HashSet<>(Arrays.asList("jpg", "png"));
+
+	private Path root;
+
+	/** Excludes the names like the configuration of the filemanager and fails for the folder 'broken'. */
+	private LocalConnector connector = new LocalConnector() {
+		@Override
+		public Set<FileProperties> getFolder(String backendPath, boolean needSize) throws C5CException {
+			if(backendPath.contains("broken"))
+				throw new IllegalStateException("broken folder");
+			return super.getFolder(backendPath, needSize);
+		}
+
+		@Override
+		protected boolean checkFilename(String name) {
+			return !name.startsWith("excluded");
+		}
+
+		@Override
+		protected boolean checkFolderName(String name) {
+			return !name.startsWith("excluded");
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("c5c-warmup");
+		copyImage(root.resolve("a.jpg"));
+		copyImage(root.resolve("excluded.jpg"));
+		Files.write(root.resolve("notes.txt"), new byte[] { 1, 2, 3 });
+		Files.write(root.resolve("corrupt.jpg"), new byte[] { 1, 2, 3 });
+		Path sub = Files.createDirectory(root.resolve("sub"));
+		copyImage(sub.resolve("b.jpg"));
+		copyImage(Files.createDirectory(root.resolve("excluded")).resolve("c.jpg"));
+		copyImage(Files.createDirectory(root.resolve("broken")).resolve("d.jpg"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(root.toFile());
+	}
+
+	@Test
+	public void testCrawl() throws Exception {
+		ThumbnailWarmUp warmUp = new ThumbnailWarmUp(connector, dim, imageExtensions,
+				Collections.singletonList(root.toString()), 0);
+		try {
+			warmUp.start();
+			awaitFinished(warmUp);
+			assertEquals(2, warmUp.getFolderCount());
+			assertEquals(2, warmUp.getThumbnailCount());
+			assertEquals(1, warmUp.getFailureCount());
+			assertEquals(0, warmUp.getPendingFolderCount());
+			assertEquals(2, connector.getThumbnailMemoryCache().size());
+		} finally {
+			warmUp.stop();
+		}
+	}
+
+	@Test
+	public void testLoop() throws Exception {
+		Files.createSymbolicLink(root.resolve("sub").resolve("loop"), root);
+		ThumbnailWarmUp warmUp = new ThumbnailWarmUp(connector, dim, imageExtensions,
+				Collections.singletonList(root.toString()), 0);
+		try {
+			warmUp.start();
+			awaitFinished(warmUp);
+			assertEquals(2, warmUp.getFolderCount());
+			assertEquals(2, warmUp.getThumbnailCount());
+			assertEquals(0, warmUp.getPendingFolderCount());
+		} finally {
+			warmUp.stop();
+		}
+	}
+
+	@Test
+	public void testCachedAreNotThrottled() throws Exception {
+		ThumbnailWarmUp warmUp = new ThumbnailWarmUp(connector, dim, imageExtensions,
+				Collections.singletonList(root.toString()), 0);
+		warmUp.start();
+		awaitFinished(warmUp);
+		assertEquals(2, connector.getThumbnailMemoryCache().size());
+
+		// one thumbnail per second, only the corrupt image has to wait
+		warmUp = new ThumbnailWarmUp(connector, dim, imageExtensions, Collections.singletonList(root.toString()), 1);
+		try {
+			long start = System.currentTimeMillis();
+			warmUp.start();
+			awaitFinished(warmUp);
+			assertTrue("cached thumbnails are throttled", System.currentTimeMillis() - start < 2500);
+			assertEquals(2, warmUp.getThumbnailCount());
+			assertEquals(1, warmUp.getFailureCount());
+		} finally {
+			warmUp.stop();
+		}
+	}
+
+	@Test
+	public void testPauseAndResume() throws Exception {
+		ThumbnailWarmUp warmUp = new ThumbnailWarmUp(connector, dim, imageExtensions,
+				Collections.singletonList(root.toString()), 0);
+		try {
+			warmUp.pause();
+			warmUp.start();
+			Thread.sleep(500);
+			assertTrue(warmUp.isPaused());
+			assertTrue(warmUp.isRunning());
+			assertEquals(0, warmUp.getThumbnailCount());
+
+			warmUp.resume();
+			assertFalse(warmUp.isPaused());
+			awaitFinished(warmUp);
+			assertEquals(2, warmUp.getThumbnailCount());
+		} finally {
+			warmUp.stop();
+		}
+	}
+
+	@Test
+	public void testWithoutThumbnails() throws Exception {
+		ThumbnailWarmUp warmUp = new ThumbnailWarmUp(connector, null, imageExtensions,
+				Collections.singletonList(root.toString()), 0);
+		try {
+			warmUp.start();
+			awaitFinished(warmUp);
+			assertEquals(0, warmUp.getFolderCount());
+			assertEquals(0, connector.getThumbnailMemoryCache().size());
+		} finally {
+			warmUp.stop();
+		}
+	}
+
+	private void copyImage(Path target) throws Exception {
+		try (InputStream in = getClass().getResourceAsStream("/exif.jpg")) {
+			Files.copy(in, target);
+		}
+	}
+
+	private static void awaitFinished(ThumbnailWarmUp warmUp) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while(warmUp.isRunning() && System.currentTimeMillis() < deadline)
+			Thread.sleep(20);
+		assertFalse("warm-up hasn't finished", warmUp.isRunning());
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class ZipArchiverTest {
+
+	/** Like 'connector.regex.exclude.files' and 'connector.regex.exclude.folders' */
+	private static final Pattern excludePattern = Pattern.compile("^\\..*");
+
+	/** Like the excluded names of the configuration of the filemanager */
+	private static final Set<String> excludedNames = new HashSet<>(Arrays.asList("excluded.txt", "excludedDir"));
+
+	/** Marks the names with the prefix 'protected' as protected. */
+	private LocalConnector connector = new LocalConnector() {
+		@Override
+		public Set<FileProperties> getFolder(String backendPath, boolean needSize) throws C5CException {
+			Set<FileProperties> props = new HashSet<>();
+			for(FileProperties fp : super.getFolder(backendPath, needSize))
+				props.add(markProtected(fp));
+			return props;
+		}
+
+		@Override
+		public FileProperties getInfo(String backendPath, boolean needSize) throws C5CException {
+			return markProtected(super.getInfo(backendPath, needSize));
+		}
+
+		@Override
+		public boolean isProtected(String backendPath) {
+			return backendPath.contains("protected");
+		}
+
+		@Override
+		protected boolean checkFilename(String name) {
+			return !excludedNames.contains(name) && !excludePattern.matcher(name).matches();
+		}
+
+		@Override
+		protected boolean checkFolderName(String name) {
+			return !excludedNames.contains(name) && !excludePattern.matcher(name).matches();
+		}
+	};
+
+	private Path dir;
+
+	private Path root;
+
+	private Path other;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("c5c-zip");
+		root = Files.createDirectory(dir.resolve("root"));
+		write(root.resolve("a.txt"), "a");
+		write(root.resolve("excluded.txt"), "excluded");
+		write(root.resolve(".hidden"), "hidden");
+		write(root.resolve("protected.txt"), "protected");
+		Path sub = Files.createDirectory(root.resolve("sub"));
+		write(sub.resolve("b.jpg"), "b");
+		write(Files.createDirectory(sub.resolve("deeper")).resolve("c.txt"), "c");
+		write(Files.createDirectory(sub.resolve("excludedDir")).resolve("d.txt"), "d");
+		write(Files.createDirectory(sub.resolve(".hiddenDir")).resolve("e.txt"), "e");
+		write(Files.createDirectory(sub.resolve("protectedDir")).resolve("f.txt"), "f");
+
+		other = Files.createDirectory(dir.resolve("other"));
+		write(other.resolve("a.txt"), "other a");
+		write(Files.createDirectory(other.resolve("sub")).resolve("g.txt"), "g");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void testFolder() throws Exception {
+		ZipArchiver archiver = new ZipArchiver(connector);
+		add(archiver, root);
+		Map<String, String> entries = writeAndRead(archiver);
+		assertEquals(new HashSet<>(Arrays.asList("root/", "root/a.txt", "root/sub/", "root/sub/b.jpg", "root/sub/deeper/",
+				"root/sub/deeper/c.txt")), entries.keySet());
+		assertEquals("a", entries.get("root/a.txt"));
+		assertEquals("c", entries.get("root/sub/deeper/c.txt"));
+	}
+
+	@Test
+	public void testLoop() throws Exception {
+		Files.createSymbolicLink(root.resolve("sub").resolve("loop"), root);
+		ZipArchiver archiver = new ZipArchiver(connector);
+		add(archiver, root);
+		Map<String, String> entries = writeAndRead(archiver);
+		assertEquals(new HashSet<>(Arrays.asList("root/", "root/a.txt", "root/sub/", "root/sub/b.jpg", "root/sub/deeper/",
+				"root/sub/deeper/c.txt")), entries.keySet());
+	}
+
+	@Test
+	public void testArchivable() throws Exception {
+		ZipArchiver archiver = new ZipArchiver(connector);
+		assertTrue(isArchivable(archiver, root.resolve("a.txt")));
+		assertTrue(isArchivable(archiver, root.resolve("sub")));
+		assertFalse(isArchivable(archiver, root.resolve("excluded.txt")));
+		assertFalse(isArchivable(archiver, root.resolve(".hidden")));
+		assertFalse(isArchivable(archiver, root.resolve("protected.txt")));
+		assertFalse(isArchivable(archiver, root.resolve("sub/excludedDir")));
+		assertFalse(isArchivable(archiver, root.resolve("sub/.hiddenDir")));
+		assertFalse(isArchivable(archiver, root.resolve("sub/protectedDir")));
+	}
+
+	@Test
+	public void testSameNames() throws Exception {
+		ZipArchiver archiver = new ZipArchiver(connector);
+		add(archiver, root.resolve("a.txt"));
+		add(archiver, other.resolve("a.txt"));
+		add(archiver, root.resolve("sub/deeper"));
+		add(archiver, other.resolve("sub"));
+		add(archiver, root.resolve("sub"));
+		Map<String, String> entries = writeAndRead(archiver);
+		assertEquals(new HashSet<>(Arrays.asList("a.txt", "a (2).txt", "deeper/", "deeper/c.txt", "sub/", "sub/g.txt",
+				"sub (2)/", "sub (2)/b.jpg", "sub (2)/deeper/", "sub (2)/deeper/c.txt")), entries.keySet());
+		assertEquals("a", entries.get("a.txt"));
+		assertEquals("other a", entries.get("a (2).txt"));
+	}
+
+	private void add(ZipArchiver archiver, Path path) throws C5CException {
+		FileProperties fp = connector.getInfo(path.toString(), false);
+		assertTrue(path.toString(), archiver.isArchivable(path.toString(), fp));
+		archiver.add(path.toString(), fp);
+	}
+
+	private boolean isArchivable(ZipArchiver archiver, Path path) throws C5CException {
+		return archiver.isArchivable(path.toString(), connector.getInfo(path.toString(), false));
+	}
+
+	private static Map<String, String> writeAndRead(ZipArchiver archiver) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ZipOutputStream zos = new ZipOutputStream(out);
+		archiver.writeEntries(zos);
+		zos.close();
+
+		Map<String, String> entries = new HashMap<>();
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+		ZipEntry entry;
+		while((entry = zis.getNextEntry()) != null)
+			entries.put(entry.getName(), IOUtils.toString(zis, "UTF-8"));
+		zis.close();
+		return entries;
+	}
+
+	private static FileProperties markProtected(FileProperties fp) {
+		if(!fp.getName().startsWith("protected"))
+			return fp;
+		return (fp.isDir()) ? new FileProperties(fp.getName(), true, fp.getRawModified())
+				: new FileProperties(fp.getName(), true, fp.getSize(), fp.getRawModified());
+	}
+
+	private static void write(Path file, String content) throws Exception {
+		Files.write(file, content.getBytes("UTF-8"));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the throughput of {@link UserObjectProxy#getDimension(java.io.InputStream)} with an increasing number of
+ * threads. The former behavior, a global lock around the call, is measured for comparison.<br/>
+ * Usage: <code>_DimensionBenchmark [image] [calls per thread]</code>
+ */
+public class _DimensionBenchmark {
+
+	private static final Object globalLock = new Object();
+
+	public static void main(String[] args) throws Exception {
+		String image = (args.length > 0) ? args[0] : "src/test/resources/filemanager/userfiles/pic01.png";
+		final int calls = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+		final byte[] data = Files.readAllBytes(Paths.get(image));
+		UserObjectProxy.initDimensionProvider(PropertiesLoader.getDimensionProviderImpl());
+
+		int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		System.out.println(String.format("image: %s, calls per thread: %d, provider: %s", image, calls,
+				PropertiesLoader.getDimensionProviderImpl()));
+		for(int threads = 1; threads <= maxThreads; threads *= 2) {
+			run(threads, calls, data, true);
+			double locked = run(threads, calls, data, true);
+			run(threads, calls, data, false);
+			double pooled = run(threads, calls, data, false);
+			System.out.println(String.format("threads: %2d, global lock: %10.0f calls/s, pooled: %10.0f calls/s", threads,
+					locked, pooled));
+		}
+	}
+
+	private static double run(int threads, final int calls, final byte[] data, final boolean lock) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for(int i = 0; i < threads; i++) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for(int c = 0; c < calls; c++) {
+						if(lock) {
+							synchronized (globalLock) {
+								UserObjectProxy.getDimension(new ByteArrayInputStream(data));
+							}
+						} else {
+							UserObjectProxy.getDimension(new ByteArrayInputStream(data));
+						}
+					}
+					return null;
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for(Future<Void> f : executor.invokeAll(tasks))
+			f.get();
+		long duration = System.nanoTime() - start;
+		executor.shutdown();
+		return (threads * (double) calls) / (duration / 1000000000d);
+	}
+}
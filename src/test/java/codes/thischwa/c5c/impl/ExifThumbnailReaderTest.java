@@ -0,0 +1,54 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class ExifThumbnailReaderTest {
+
+	@Test
+	public void testIsApplicable() {
+		ExifThumbnailReader reader = new ExifThumbnailReader(true);
+		assertTrue(reader.isApplicable("jpg"));
+		assertTrue(reader.isApplicable("JPEG"));
+		assertFalse(reader.isApplicable("png"));
+		assertFalse(reader.isApplicable(null));
+		assertFalse(new ExifThumbnailReader(false).isApplicable("jpg"));
+	}
+
+	@Test
+	public void testIsSuitable() {
+		Dimension thumb = new Dimension(64, 64);
+		assertTrue(ExifThumbnailReader.isSuitable(new Dimension(160, 120), new Dimension(4000, 3000), thumb));
+		assertTrue(ExifThumbnailReader.isSuitable(new Dimension(120, 160), new Dimension(3000, 4000), thumb));
+		// letterboxed
+		assertFalse(ExifThumbnailReader.isSuitable(new Dimension(160, 120), new Dimension(3888, 2592), thumb));
+		// too small
+		assertFalse(ExifThumbnailReader.isSuitable(new Dimension(160, 120), new Dimension(4000, 3000), new Dimension(200, 200)));
+		assertFalse(ExifThumbnailReader.isSuitable(new Dimension(0, 0), new Dimension(4000, 3000), thumb));
+	}
+
+	@Test
+	public void testRead() throws Exception {
+		Path file = Paths.get(getClass().getResource("/exif.jpg").toURI());
+		ExifThumbnailReader reader = new ExifThumbnailReader(true);
+		BufferedImage img = reader.read(file, new Dimension(3888, 2592), new Dimension(64, 64));
+		assertEquals(1, reader.getHitCount() + reader.getFallbackCount());
+		assertEquals(img != null, reader.getHitCount() == 1);
+	}
+}
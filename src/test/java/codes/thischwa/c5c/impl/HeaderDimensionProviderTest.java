@@ -0,0 +1,113 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import codes.thischwa.jii.exception.ReadException;
+
+public class HeaderDimensionProviderTest {
+
+	private HeaderDimensionProvider provider = new HeaderDimensionProvider();
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("c5c-dim");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void testPng() throws Exception {
+		provider.set(Paths.get("src/test/resources/filemanager/userfiles/pic01.png"));
+		assertEquals(new Dimension(110, 70), provider.getDimension());
+	}
+
+	@Test
+	public void testJpegWithExif() throws Exception {
+		Path jpg = Paths.get("src/test/resources/exif.jpg");
+		BufferedImage img = ImageIO.read(jpg.toFile());
+		provider.set(jpg);
+		assertEquals(new Dimension(img.getWidth(), img.getHeight()), provider.getDimension());
+
+		// the same by a stream
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(jpg))) {
+			provider.set(in);
+			assertEquals(new Dimension(img.getWidth(), img.getHeight()), provider.getDimension());
+		}
+	}
+
+	@Test
+	public void testWrittenFormats() throws Exception {
+		for(String format : new String[] { "png", "gif", "bmp", "jpg" }) {
+			Path image = write(format, 321, 123);
+			provider.set(image);
+			assertEquals(format, new Dimension(321, 123), provider.getDimension());
+			provider.set(image.toFile());
+			assertEquals(format, new Dimension(321, 123), provider.getDimension());
+		}
+	}
+
+	@Test
+	public void testWebP() throws Exception {
+		// RIFF header with a VP8X chunk, canvas 800x600
+		byte[] data = new byte[30];
+		System.arraycopy("RIFF".getBytes("US-ASCII"), 0, data, 0, 4);
+		System.arraycopy("WEBPVP8X".getBytes("US-ASCII"), 0, data, 8, 8);
+		data[24] = (byte) (799 & 0xFF);
+		data[25] = (byte) (799 >> 8);
+		data[27] = (byte) (599 & 0xFF);
+		data[28] = (byte) (599 >> 8);
+		Path image = Files.write(dir.resolve("test.webp"), data);
+		provider.set(image);
+		assertEquals(new Dimension(800, 600), provider.getDimension());
+	}
+
+	@Test(expected = ReadException.class)
+	public void testUnsupported() throws Exception {
+		Path file = Files.write(dir.resolve("test.svg"), "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes("UTF-8"));
+		provider.set(file);
+		provider.getDimension();
+	}
+
+	@Test(expected = ReadException.class)
+	public void testNotExisting() throws Exception {
+		provider.set(dir.resolve("missing.png"));
+		provider.getDimension();
+	}
+
+	private Path write(String format, int width, int height) throws Exception {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Path file = dir.resolve("test." + format);
+		assertTrue(format, ImageIO.write(img, format, file.toFile()));
+		return file;
+	}
+}
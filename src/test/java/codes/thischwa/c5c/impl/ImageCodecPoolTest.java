@@ -0,0 +1,67 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Test;
+
+public class ImageCodecPoolTest {
+
+	@Test
+	public void testEncode() throws Exception {
+		BufferedImage img = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+		for(String ext : new String[] { "jpg", "JPEG", "png" }) {
+			byte[] data = ImageCodecPool.encode(img, ext);
+			BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(data));
+			assertEquals(120, decoded.getWidth());
+			assertEquals(80, decoded.getHeight());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testEncodeUnsupported() throws Exception {
+		ImageCodecPool.encode(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "xyz");
+	}
+
+	@Test
+	public void testReaderReuse() throws Exception {
+		byte[] png = ImageCodecPool.encode(new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB), "png");
+		ImageReader first = read(png, "png");
+		ImageReader second = read(png, "png");
+		assertSame(first, second);
+
+		// the extension doesn't match the content, the reader is selected by the content
+		ImageReader byContent = read(png, "jpg");
+		assertEquals("png", byContent.getFormatName().toLowerCase());
+	}
+
+	private ImageReader read(byte[] data, String ext) throws IOException {
+		ImageInputStream iis = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+		ImageReader reader = ImageCodecPool.borrowReader(iis, ext);
+		try {
+			assertEquals(30, reader.getWidth(0));
+			return reader;
+		} finally {
+			ImageCodecPool.returnReader(reader);
+			iis.close();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ImageDerivationTest {
+
+	@Test
+	public void testComputeSubsampling() {
+		Dimension thumb = new Dimension(64, 64);
+		assertEquals(31, ImageDerivation.computeSubsampling(6000, 4000, thumb));
+		assertEquals(1, ImageDerivation.computeSubsampling(200, 100, thumb));
+		assertEquals(1, ImageDerivation.computeSubsampling(50, 50, thumb));
+		assertEquals(2, ImageDerivation.computeSubsampling(1500, 2400, new Dimension(375, 600)));
+		assertEquals(1, ImageDerivation.computeSubsampling(1000, 1000, new Dimension(0, 0)));
+	}
+
+	@Test
+	public void testDerive() throws Exception {
+		Dimension thumb = new Dimension(64, 64);
+		Dimension medium = new Dimension(128, 128);
+		Dimension huge = new Dimension(100000, 100000);
+		InputStream in = getClass().getResourceAsStream("/exif.jpg");
+		try {
+			Map<Dimension, byte[]> variants = ImageDerivation.derive(in, "jpg", Collections.singleton(thumb),
+					Arrays.asList(medium, huge), null);
+			// the image is smaller than the huge one, so it's skipped
+			assertEquals(2, variants.size());
+			assertFalse(variants.containsKey(huge));
+			for(Dimension dim : Arrays.asList(thumb, medium)) {
+				BufferedImage img = ImageIO.read(new ByteArrayInputStream(variants.get(dim)));
+				assertTrue(img.getWidth() <= dim.width);
+				assertTrue(img.getHeight() <= dim.height);
+				assertTrue(img.getWidth() == dim.width || img.getHeight() == dim.height);
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+}
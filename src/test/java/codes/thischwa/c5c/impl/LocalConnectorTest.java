@@ -0,0 +1,226 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import codes.thischwa.c5c.DimensionCache;
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.ImageProcessingScheduler;
+import codes.thischwa.c5c.ThumbnailCache;
+import codes.thischwa.c5c.UserObjectProxy;
+
+public class LocalConnectorTest {
+
+	private static final Dimension previewDim = new Dimension(400, 400);
+
+	@Test
+	public void testResize() throws Exception {
+		InputStream in = getClass().getResourceAsStream("/exif.jpg");
+		try {
+			StreamContent sc = new LocalConnector().resize(in, "jpg", new Dimension(64, 64));
+			BufferedImage img = ImageIO.read(sc.getInputStream());
+			assertTrue(img.getWidth() <= 64);
+			assertTrue(img.getHeight() <= 64);
+			assertTrue(img.getWidth() == 64 || img.getHeight() == 64);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	@Test
+	public void testGetFolderParallel() throws Exception {
+		Path dir = Files.createTempDirectory("c5c-folder");
+		// the names are checked without a request
+		LocalConnector connector = new LocalConnector() {
+			@Override
+			protected boolean checkFilename(String name) {
+				return !name.startsWith("excluded");
+			}
+
+			@Override
+			protected boolean checkFolderName(String name) {
+				return !name.startsWith("excluded");
+			}
+		};
+		try {
+			for(int i = 0; i < 600; i++) {
+				if(i % 20 == 0)
+					Files.createDirectory(dir.resolve("folder" + i));
+				else if(i % 50 == 1)
+					Files.write(dir.resolve("excluded" + i + ".txt"), new byte[i]);
+				else
+					Files.write(dir.resolve("file" + i + ".txt"), new byte[i]);
+			}
+
+			List<FileProperties> inline = sortByName(connector.getFolder(dir.toString(), true));
+			connector.initFolderPool(4);
+			List<FileProperties> parallel = sortByName(connector.getFolder(dir.toString(), true));
+
+			assertEquals(600 - 12, inline.size());
+			assertEquals(inline, parallel);
+			for(int i = 0; i < inline.size(); i++) {
+				FileProperties expected = inline.get(i);
+				FileProperties actual = parallel.get(i);
+				assertEquals(expected.getName(), actual.getName());
+				assertEquals(expected.isDir(), actual.isDir());
+				assertEquals(expected.getSize(), actual.getSize());
+				assertEquals(expected.getRawModified(), actual.getRawModified());
+			}
+		} finally {
+			connector.initFolderPool(0);
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+
+	@Test
+	public void testPreviewCached() throws Exception {
+		Path dir = Files.createTempDirectory("c5c-preview");
+		try {
+			Path image = copyImage(dir);
+			ThumbnailCache previewCache = new ThumbnailCache(dir.resolve("previews"), 10000000);
+			LocalConnector connector = buildPreviewConnector(previewCache, image);
+			previewCache.put(image.toString(), Files.getLastModifiedTime(image).toMillis(), Files.size(image), previewDim,
+					new byte[] { 1, 2, 3 });
+			long admitted = getScheduler().getAdmittedCount();
+
+			assertArrayEquals(new byte[] { 1, 2, 3 }, read(connector.preview(image.toString(), previewDim)));
+			assertEquals(admitted, getScheduler().getAdmittedCount());
+		} finally {
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+
+	@Test
+	public void testPreviewSmallImage() throws Exception {
+		Path dir = Files.createTempDirectory("c5c-preview");
+		try {
+			Path image = dir.resolve("small.png");
+			ImageIO.write(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), "png", image.toFile());
+			ThumbnailCache previewCache = new ThumbnailCache(dir.resolve("previews"), 10000000);
+			LocalConnector connector = buildPreviewConnector(previewCache, image);
+			long admitted = getScheduler().getAdmittedCount();
+
+			// the image is passed through as it is
+			assertArrayEquals(Files.readAllBytes(image), read(connector.preview(image.toString(), previewDim)));
+			assertEquals(0, previewCache.size());
+			assertEquals(admitted, getScheduler().getAdmittedCount());
+		} finally {
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+
+	@Test
+	public void testPreviewLargeImage() throws Exception {
+		Path dir = Files.createTempDirectory("c5c-preview");
+		try {
+			Path image = copyImage(dir);
+			ThumbnailCache previewCache = new ThumbnailCache(dir.resolve("previews"), 10000000);
+			LocalConnector connector = buildPreviewConnector(previewCache, image);
+			long admitted = getScheduler().getAdmittedCount();
+
+			byte[] derived = read(connector.preview(image.toString(), previewDim));
+			BufferedImage img = ImageIO.read(new ByteArrayInputStream(derived));
+			assertTrue(img.getWidth() <= previewDim.width);
+			assertTrue(img.getHeight() <= previewDim.height);
+			// other variants could be derived by the same decode, depending on the configuration
+			long lastModified = Files.getLastModifiedTime(image).toMillis();
+			assertNotNull(previewCache.get(image.toString(), lastModified, Files.size(image), previewDim));
+			assertEquals(admitted + 1, getScheduler().getAdmittedCount());
+
+			// the second request is served from the cache, the image isn't decoded again
+			assertArrayEquals(derived, read(connector.preview(image.toString(), previewDim)));
+			assertEquals(admitted + 1, getScheduler().getAdmittedCount());
+		} finally {
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+
+	/**
+	 * Builds a connector with the desired preview cache. The dimension of the image is cached in advance, because the
+	 * dimension provider isn't initialized without a servlet context.
+	 */
+	private static LocalConnector buildPreviewConnector(final ThumbnailCache previewCache, Path image) throws Exception {
+		final DimensionCache dimensionCache = new DimensionCache(100, null);
+		HeaderDimensionProvider provider = new HeaderDimensionProvider();
+		provider.set(image);
+		dimensionCache.put(image.toString(), Files.getLastModifiedTime(image).toMillis(), Files.size(image),
+				provider.getDimension());
+		return new LocalConnector() {
+			@Override
+			protected ThumbnailCache getPreviewCache() {
+				return previewCache;
+			}
+
+			@Override
+			protected DimensionCache getDimensionCache() {
+				return dimensionCache;
+			}
+
+			@Override
+			protected boolean isImageExtension(String ext) {
+				return ext.equals("jpg") || ext.equals("png");
+			}
+		};
+	}
+
+	private static ImageProcessingScheduler getScheduler() {
+		return UserObjectProxy.getImageProcessingScheduler();
+	}
+
+	private Path copyImage(Path dir) throws Exception {
+		Path image = dir.resolve("exif.jpg");
+		try (InputStream in = getClass().getResourceAsStream("/exif.jpg")) {
+			Files.copy(in, image, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return image;
+	}
+
+	private static byte[] read(StreamContent sc) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = sc.getInputStream()) {
+			IOUtils.copy(in, out);
+		}
+		return out.toByteArray();
+	}
+
+	private static List<FileProperties> sortByName(Set<FileProperties> props) {
+		List<FileProperties> sorted = new ArrayList<>(props);
+		Collections.sort(sorted, new Comparator<FileProperties>() {
+			@Override
+			public int compare(FileProperties o1, FileProperties o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+		return sorted;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalFileAttributesTest {
+
+	private Path dir;
+
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("c5c-attrs");
+		file = Files.write(dir.resolve("test.txt"), "content".getBytes("UTF-8"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(dir);
+	}
+
+	@Test
+	public void testFile() throws Exception {
+		LocalFileAttributes attrs = LocalFileAttributes.read(file, false);
+		assertTrue(attrs.isRegularFile());
+		assertFalse(attrs.isDirectory());
+		assertEquals(7, attrs.getSize());
+		assertEquals(Files.getLastModifiedTime(file).toMillis(), attrs.getLastModified().getTime());
+		assertEquals(LocalFileAttributes.isProtected(file), attrs.isProtected());
+	}
+
+	@Test
+	public void testDirectory() throws Exception {
+		LocalFileAttributes attrs = LocalFileAttributes.read(dir, true);
+		assertTrue(attrs.isDirectory());
+		assertFalse(attrs.isRegularFile());
+		assertEquals(LocalFileAttributes.isProtected(dir), attrs.isProtected());
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void testNotExisting() throws Exception {
+		LocalFileAttributes.read(dir.resolve("missing.txt"), false);
+	}
+}
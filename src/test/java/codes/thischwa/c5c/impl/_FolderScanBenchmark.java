@@ -0,0 +1,114 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Compares the former two-pass folder scan of the {@link LocalConnector} with the single-pass scan based on
+ * {@link LocalFileAttributes}. Usage: <code>_FolderScanBenchmark [entries] [rounds]</code><br/>
+ * To compare the number of system calls, run it with <code>strace -c -f</code>.
+ */
+public class _FolderScanBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int entries = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+		Path dir = Files.createTempDirectory("c5c-scan");
+		try {
+			for(int i = 0; i < entries; i++) {
+				if(i % 20 == 0)
+					Files.createDirectory(dir.resolve("folder" + i));
+				else
+					Files.write(dir.resolve("file" + i + ".txt"), new byte[] { 1, 2, 3 });
+			}
+
+			// warm up
+			for(int i = 0; i < 3; i++) {
+				scanTwoPass(dir);
+				scanSinglePass(dir);
+			}
+
+			long twoPass = 0;
+			long singlePass = 0;
+			for(int i = 0; i < rounds; i++) {
+				long start = System.nanoTime();
+				scanTwoPass(dir);
+				twoPass += System.nanoTime() - start;
+				start = System.nanoTime();
+				scanSinglePass(dir);
+				singlePass += System.nanoTime() - start;
+			}
+			System.out.println(String.format("entries: %d, rounds: %d", entries, rounds));
+			System.out.println(String.format("two-pass scan:    %8.2f ms/scan", twoPass / (rounds * 1000000d)));
+			System.out.println(String.format("single-pass scan: %8.2f ms/scan", singlePass / (rounds * 1000000d)));
+		} finally {
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+
+	/** The scan as it was implemented before: one stream for directories, one for files and several calls per entry. */
+	private static int scanTwoPass(Path dir) throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, new DirectoryStream.Filter<Path>() {
+			@Override
+			public boolean accept(Path entry) throws IOException {
+				return Files.isDirectory(entry);
+			}
+		})) {
+			for(Path d : stream) {
+				File file = d.toFile();
+				boolean isProtected = !(file.canRead() && file.canWrite());
+				Date modified = new Date(Files.getLastModifiedTime(d).toMillis());
+				if(modified != null && !isProtected)
+					count++;
+			}
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, new DirectoryStream.Filter<Path>() {
+			@Override
+			public boolean accept(Path entry) throws IOException {
+				return Files.isRegularFile(entry);
+			}
+		})) {
+			for(Path f : stream) {
+				Date modified = new Date(Files.getLastModifiedTime(f).toMillis());
+				long size = Files.size(f);
+				File file = f.toFile();
+				boolean isProtected = !(file.canRead() && file.canWrite());
+				boolean isDir = Files.isDirectory(f);
+				if(modified != null && size >= 0 && !isProtected && !isDir)
+					count++;
+			}
+		}
+		return count;
+	}
+
+	private static int scanSinglePass(Path dir) throws IOException {
+		int count = 0;
+		boolean checkAccess = LocalFileAttributes.isAccessCheckRequired(dir);
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for(Path entry : stream) {
+				LocalFileAttributes attrs = LocalFileAttributes.read(entry, checkAccess);
+				if((attrs.isDirectory() || attrs.isRegularFile()) && !attrs.isProtected())
+					count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.imgscalr.Scalr;
+
+/**
+ * Measures the encoding of a thumbnail by the pooled writers of the {@link ImageCodecPool}. The former behavior,
+ * {@link ImageIO#write(java.awt.image.RenderedImage, String, java.io.OutputStream)} per call, is measured for
+ * comparison.<br/>
+ * Usage: <code>_ImageCodecBenchmark [image] [encodes] [max. width/height of the thumbnail]</code>
+ */
+public class _ImageCodecBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String image = (args.length > 0) ? args[0] : "src/test/resources/exif.jpg";
+		int encodes = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+		int size = (args.length > 2) ? Integer.parseInt(args[2]) : 64;
+		String ext = image.substring(image.lastIndexOf('.') + 1).toLowerCase();
+
+		BufferedImage original = ImageIO.read(new File(image));
+		BufferedImage thumbnail = Scalr.resize(original, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, size, size);
+		original.flush();
+
+		// warm up
+		for(int i = 0; i < encodes / 5; i++) {
+			encodeWithImageIO(thumbnail, ext);
+			ImageCodecPool.encode(thumbnail, ext);
+		}
+
+		long imageIO = 0;
+		long pooled = 0;
+		for(int i = 0; i < encodes; i++) {
+			long start = System.nanoTime();
+			encodeWithImageIO(thumbnail, ext);
+			imageIO += System.nanoTime() - start;
+			start = System.nanoTime();
+			ImageCodecPool.encode(thumbnail, ext);
+			pooled += System.nanoTime() - start;
+		}
+		System.out.println(String.format("image: %s, thumbnail: %dx%d, encodes: %d", image, thumbnail.getWidth(),
+				thumbnail.getHeight(), encodes));
+		System.out.println(String.format("ImageIO.write: %8.0f encodes/s", encodes / (imageIO / 1000000000d)));
+		System.out.println(String.format("pooled writer: %8.0f encodes/s", encodes / (pooled / 1000000000d)));
+	}
+
+	private static byte[] encodeWithImageIO(BufferedImage img, String ext) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(img, ext, out);
+		return out.toByteArray();
+	}
+}
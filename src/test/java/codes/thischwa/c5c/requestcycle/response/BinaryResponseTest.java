@@ -0,0 +1,172 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryResponseTest {
+
+	private byte[] data;
+
+	private TrackedInputStream body;
+
+	private AtomicInteger completions;
+
+	private List<AsyncListener> listeners;
+
+	private AsyncContext asyncContext;
+
+	@Before
+	public void setUp() {
+		// several chunks of the writer
+		data = new byte[300000];
+		new Random(1).nextBytes(data);
+		body = new TrackedInputStream(data);
+		completions = new AtomicInteger();
+		listeners = new ArrayList<>();
+		asyncContext = ServletStubs.asyncContext(completions, listeners);
+	}
+
+	@Test
+	public void testWriteAsync() throws Exception {
+		ServletStubs.NonBlockingOutput out = new ServletStubs.NonBlockingOutput();
+		HttpServletResponse resp = ServletStubs.response(out);
+		new TestResponse(body).writeAsync(resp, asyncContext);
+		assertNotNull(out.listener);
+		assertEquals(1, listeners.size());
+
+		int calls = 0;
+		while(completions.get() == 0 && calls++ < 100)
+			out.writePossible();
+		assertTrue("more than one chunk per call", calls > 1);
+		assertArrayEquals(data, out.content.toByteArray());
+		assertTrue(body.closed);
+		assertEquals(1, completions.get());
+
+		// the container signals the completion
+		listeners.get(0).onComplete(new AsyncEvent(asyncContext));
+		assertEquals(1, completions.get());
+		assertEquals(1, body.closeCount);
+	}
+
+	@Test
+	public void testError() throws Exception {
+		ServletStubs.NonBlockingOutput out = new ServletStubs.NonBlockingOutput();
+		new TestResponse(body).writeAsync(ServletStubs.response(out), asyncContext);
+		out.writePossible();
+		assertFalse(body.closed);
+
+		// the client has gone
+		out.listener.onError(new IOException("broken pipe"));
+		assertTrue(body.closed);
+		assertEquals(1, completions.get());
+		assertTrue(out.content.size() < data.length);
+
+		// the container reports the error again and completes the request
+		listeners.get(0).onError(new AsyncEvent(asyncContext, new IOException("broken pipe")));
+		listeners.get(0).onComplete(new AsyncEvent(asyncContext));
+		assertEquals(1, completions.get());
+		assertEquals(1, body.closeCount);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ServletStubs.NonBlockingOutput out = new ServletStubs.NonBlockingOutput();
+		new TestResponse(body).writeAsync(ServletStubs.response(out), asyncContext);
+		listeners.get(0).onTimeout(new AsyncEvent(asyncContext));
+		assertTrue(body.closed);
+		assertEquals(1, completions.get());
+	}
+
+	@Test
+	public void testFailedStart() throws Exception {
+		ServletStubs.Output out = new ServletStubs.Output() {
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+				throw new IllegalStateException("not async");
+			}
+		};
+		try {
+			new TestResponse(body).writeAsync(ServletStubs.response(out), asyncContext);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertTrue(body.closed);
+		assertEquals(1, completions.get());
+	}
+
+	@Test
+	public void testWithoutBody() throws Exception {
+		ServletStubs.NonBlockingOutput out = new ServletStubs.NonBlockingOutput();
+		new TestResponse(null).writeAsync(ServletStubs.response(out), asyncContext);
+		assertNull(out.listener);
+		assertEquals(1, completions.get());
+	}
+
+	private static class TestResponse extends BinaryResponse {
+		private final InputStream body;
+
+		TestResponse(InputStream body) {
+			super(null);
+			this.body = body;
+		}
+
+		@Override
+		protected void writeHeaders(HttpServletResponse resp) {
+			resp.setStatus(HttpServletResponse.SC_OK);
+		}
+
+		@Override
+		protected void writeBody(HttpServletResponse resp) throws IOException {
+			writeContent(resp, body, null, -1);
+		}
+
+		@Override
+		protected InputStream getBody() {
+			return body;
+		}
+	}
+
+	private static class TrackedInputStream extends ByteArrayInputStream {
+		private boolean closed = false;
+
+		private int closeCount = 0;
+
+		TrackedInputStream(byte[] data) {
+			super(data);
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			closeCount++;
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GenericResponseTest {
+
+	private Path file;
+
+	private byte[] data;
+
+	@Before
+	public void setUp() throws Exception {
+		data = new byte[300000];
+		new Random(1).nextBytes(data);
+		file = Files.createTempFile("c5c-content", ".bin");
+		Files.write(file, data);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testWriteFile() throws Exception {
+		// without a request there isn't any sendfile support, so the channel is transferred
+		ServletStubs.Output out = new ServletStubs.Output();
+		FileInputStream in = new FileInputStream(file.toFile());
+		GenericResponse.writeContent(ServletStubs.response(out), in, file, data.length);
+		assertArrayEquals(data, out.content.toByteArray());
+		assertFalse(in.getChannel().isOpen());
+	}
+
+	@Test
+	public void testWriteFileRange() throws Exception {
+		ServletStubs.Output out = new ServletStubs.Output();
+		FileInputStream in = new FileInputStream(file.toFile());
+		in.getChannel().position(1000);
+		GenericResponse.writeContent(ServletStubs.response(out), in, file, 1000, 5000);
+		assertArrayEquals(Arrays.copyOfRange(data, 1000, 6000), out.content.toByteArray());
+
+		// the length exceeds the file
+		out = new ServletStubs.Output();
+		in = new FileInputStream(file.toFile());
+		in.getChannel().position(data.length - 10);
+		GenericResponse.writeContent(ServletStubs.response(out), in, file, data.length - 10, 100);
+		assertArrayEquals(Arrays.copyOfRange(data, data.length - 10, data.length), out.content.toByteArray());
+	}
+
+	@Test
+	public void testWriteStream() throws Exception {
+		ServletStubs.Output out = new ServletStubs.Output();
+		GenericResponse.writeContent(ServletStubs.response(out), new ByteArrayInputStream(data), null, data.length);
+		assertArrayEquals(data, out.content.toByteArray());
+	}
+}
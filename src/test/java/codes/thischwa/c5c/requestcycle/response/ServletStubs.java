@@ -0,0 +1,152 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Stubs of the servlet API to test the writing of the responses without a container.
+ */
+final class ServletStubs {
+
+	private ServletStubs() {
+	}
+
+	/**
+	 * Builds a response, which collects the headers and writes the content to the desired output.
+	 */
+	static HttpServletResponse response(final ServletOutputStream out, final Map<String, String> headers) {
+		return (HttpServletResponse) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+				new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						switch(method.getName()) {
+						case "getOutputStream":
+							return out;
+						case "setHeader":
+						case "addHeader":
+							headers.put((String) args[0], String.valueOf(args[1]));
+							return null;
+						case "setStatus":
+							headers.put("status", String.valueOf(args[0]));
+							return null;
+						default:
+							return null;
+						}
+					}
+				});
+	}
+
+	static HttpServletResponse response(ServletOutputStream out) {
+		return response(out, new HashMap<String, String>());
+	}
+
+	/**
+	 * Builds an asynchronous context, which counts the calls of {@link AsyncContext#complete()} and collects the
+	 * listeners.
+	 */
+	static AsyncContext asyncContext(final AtomicInteger completions, final List<AsyncListener> listeners) {
+		return (AsyncContext) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+				new Class<?>[] { AsyncContext.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						switch(method.getName()) {
+						case "complete":
+							if(completions.incrementAndGet() > 1)
+								throw new IllegalStateException("completed already");
+							return null;
+						case "addListener":
+							listeners.add((AsyncListener) args[0]);
+							return null;
+						default:
+							return null;
+						}
+					}
+				});
+	}
+
+	/**
+	 * Output of a response, which collects the written content.
+	 */
+	static class Output extends ServletOutputStream {
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		@Override
+		public void write(int b) {
+			content.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			content.write(b, off, len);
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Output for non-blocking I/O, which simulates a slow client: it isn't ready anymore after each write, until the
+	 * container calls the {@link WriteListener} again, see {@link #writePossible()}.
+	 */
+	static class NonBlockingOutput extends Output {
+		WriteListener listener;
+
+		private boolean ready = false;
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if(!ready)
+				throw new IllegalStateException("not ready");
+			super.write(b, off, len);
+			ready = false;
+		}
+
+		@Override
+		public boolean isReady() {
+			return ready;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			listener = writeListener;
+		}
+
+		/**
+		 * Signals that the client has taken the previous chunk, like the container does.
+		 */
+		void writePossible() throws IOException {
+			ready = true;
+			listener.onWritePossible();
+		}
+	}
+}
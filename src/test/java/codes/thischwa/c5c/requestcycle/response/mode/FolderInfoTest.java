@@ -12,10 +12,15 @@ package codes.thischwa.c5c.requestcycle.response.mode;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 public class FolderInfoTest {
 	
 	@Test
@@ -37,4 +42,30 @@ public class FolderInfoTest {
 		assertEquals(expected, resp.toString());
 	}
 
+
+	@Test
+	public void testWriteIsCompatible() throws Exception {
+		Date date = new Date(1429912800000l);
+		FolderInfo resp = new FolderInfo();
+		Map<String, FileInfo> items = new LinkedHashMap<>();
+
+		FileInfo fileInfo = new FileInfo("/tmp/\u00fcber/", true, false);
+		fileInfo.setFileProperties(new FileInfoProperties("b\u00e4r \"\u20ac\" \ud83d\ude00\t.png", false, 200, 100, 30024, date));
+		resp.add(fileInfo);
+		items.put(fileInfo.getPath(), fileInfo);
+		fileInfo = new FileInfo("/tmp/\u00fcber/", true, false);
+		fileInfo.setFileProperties(new FileInfoProperties("a\\b.txt", false, 12, date));
+		resp.add(fileInfo);
+		items.put(fileInfo.getPath(), fileInfo);
+
+		// the former way: serializing to a string and escaping the slashes afterwards
+		String json = new ObjectMapper().writeValueAsString(items).replace("/", "\\/");
+		assertEquals(json, resp.toString());
+		for(String encoding : new String[] { "UTF-8", "ISO-8859-1" }) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			resp.write(out, encoding);
+			assertArrayEquals(encoding, json.getBytes(encoding), out.toByteArray());
+		}
+	}
+
 }
@@ -0,0 +1,76 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class ByteRangeTest {
+
+	@Test
+	public void testParseSingle() {
+		List<ByteRange> ranges = ByteRange.parse("bytes=0-499", 1000);
+		assertEquals(1, ranges.size());
+		assertEquals(0, ranges.get(0).getStart());
+		assertEquals(499, ranges.get(0).getEnd());
+		assertEquals(500, ranges.get(0).getLength());
+		assertEquals("bytes 0-499/1000", ranges.get(0).toContentRange(1000));
+
+		ranges = ByteRange.parse("bytes=500-", 1000);
+		assertEquals(500, ranges.get(0).getStart());
+		assertEquals(999, ranges.get(0).getEnd());
+
+		ranges = ByteRange.parse("bytes=-100", 1000);
+		assertEquals(900, ranges.get(0).getStart());
+		assertEquals(999, ranges.get(0).getEnd());
+
+		// the end and the suffix are limited to the length
+		ranges = ByteRange.parse("bytes=900-5000", 1000);
+		assertEquals(999, ranges.get(0).getEnd());
+		ranges = ByteRange.parse("bytes=-5000", 1000);
+		assertEquals(0, ranges.get(0).getStart());
+	}
+
+	@Test
+	public void testParseMulti() {
+		List<ByteRange> ranges = ByteRange.parse("bytes=0-9, 20-29,-5", 100);
+		assertEquals(3, ranges.size());
+		assertEquals(20, ranges.get(1).getStart());
+		assertEquals(95, ranges.get(2).getStart());
+
+		// unsatisfiable ranges are dropped
+		ranges = ByteRange.parse("bytes=0-9,200-300", 100);
+		assertEquals(1, ranges.size());
+	}
+
+	@Test
+	public void testParseUnsatisfiable() {
+		assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+		assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+		assertTrue(ByteRange.parse("bytes=0-", 0).isEmpty());
+	}
+
+	@Test
+	public void testParseIgnored() {
+		assertNull(ByteRange.parse(null, 1000));
+		assertNull(ByteRange.parse("items=0-9", 1000));
+		assertNull(ByteRange.parse("bytes=9-0", 1000));
+		assertNull(ByteRange.parse("bytes=a-b", 1000));
+		assertNull(ByteRange.parse("bytes=10", 1000));
+		StringBuilder tooMany = new StringBuilder("bytes=0-0");
+		for(int i = 1; i <= ByteRange.MAX_RANGES; i++)
+			tooMany.append(',').append(i).append('-').append(i);
+		assertNull(ByteRange.parse(tooMany.toString(), 1000));
+	}
+}
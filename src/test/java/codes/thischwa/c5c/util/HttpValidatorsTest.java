@@ -0,0 +1,64 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HttpValidatorsTest {
+
+	/** Tue, 13 May 2014 16:53:20.123 GMT */
+	private static final long lastModified = 1400000000123L;
+
+	@Test
+	public void testBuildETag() {
+		assertEquals("\"3e8-145f680b07b\"", HttpValidators.buildETag(1000, lastModified));
+		assertEquals("\"3e8-145f680b07b\"", HttpValidators.buildETag(1000, lastModified, ""));
+		assertEquals("\"3e8-145f680b07b-t64x64\"", HttpValidators.buildETag(1000, lastModified, "t64x64"));
+	}
+
+	@Test
+	public void testIfNoneMatch() {
+		String etag = HttpValidators.buildETag(1000, lastModified, "t64x64");
+		assertTrue(HttpValidators.isNotModified(etag, null, etag, lastModified));
+		assertTrue(HttpValidators.isNotModified("W/" + etag, null, etag, lastModified));
+		assertTrue(HttpValidators.isNotModified("\"other\", " + etag, null, etag, lastModified));
+		assertTrue(HttpValidators.isNotModified("*", null, etag, lastModified));
+		assertFalse(HttpValidators.isNotModified(HttpValidators.buildETag(1000, lastModified, "t32x32"), null, etag, lastModified));
+		// If-Modified-Since is ignored, if there is If-None-Match
+		assertFalse(HttpValidators.isNotModified("\"other\"", "Tue, 13 May 2014 16:53:20 GMT", etag, lastModified));
+	}
+
+	@Test
+	public void testIfModifiedSince() {
+		String etag = HttpValidators.buildETag(1000, lastModified);
+		assertFalse(HttpValidators.isNotModified(null, null, etag, lastModified));
+		assertTrue(HttpValidators.isNotModified(null, "Tue, 13 May 2014 16:53:20 GMT", etag, lastModified));
+		assertTrue(HttpValidators.isNotModified(null, "Wed, 14 May 2014 00:00:00 GMT", etag, lastModified));
+		assertFalse(HttpValidators.isNotModified(null, "Tue, 13 May 2014 16:53:19 GMT", etag, lastModified));
+		assertFalse(HttpValidators.isNotModified(null, "garbage", etag, lastModified));
+		assertFalse(HttpValidators.isNotModified(null, "Tue, 13 May 2014 16:53:20 GMT", etag, 0));
+	}
+
+	@Test
+	public void testIfRange() {
+		String etag = HttpValidators.buildETag(1000, lastModified);
+		assertTrue(HttpValidators.isIfRangeSatisfied(null, etag, lastModified));
+		assertTrue(HttpValidators.isIfRangeSatisfied(etag, etag, lastModified));
+		assertFalse(HttpValidators.isIfRangeSatisfied(HttpValidators.buildETag(1001, lastModified), etag, lastModified));
+		assertFalse(HttpValidators.isIfRangeSatisfied("W/" + etag, etag, lastModified));
+		assertTrue(HttpValidators.isIfRangeSatisfied("Tue, 13 May 2014 16:53:20 GMT", etag, lastModified));
+		assertFalse(HttpValidators.isIfRangeSatisfied("Tue, 13 May 2014 16:53:21 GMT", etag, lastModified));
+		assertFalse(HttpValidators.isIfRangeSatisfied("garbage", etag, lastModified));
+		assertFalse(HttpValidators.isIfRangeSatisfied(etag, etag, 0));
+	}
+}
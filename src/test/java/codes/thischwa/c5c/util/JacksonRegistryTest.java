@@ -0,0 +1,82 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+public class JacksonRegistryTest {
+
+	@Test
+	public void testSlashEscapes() throws Exception {
+		Map<String, String> map = new LinkedHashMap<>();
+		map.put("/path/", "a/b \u00fcber \"q\"");
+		assertEquals("{\"\\/path\\/\":\"a\\/b \u00fcber \\\"q\\\"\"}",
+				JacksonRegistry.getResponseWriter(LinkedHashMap.class).writeValueAsString(map));
+		// the plain writer follows the defaults of Jackson
+		assertEquals("{\"/path/\":\"a/b \u00fcber \\\"q\\\"\"}", JacksonRegistry.getWriter(LinkedHashMap.class)
+				.writeValueAsString(map));
+	}
+
+	@Test
+	public void testTargetIsNotClosed() throws Exception {
+		Map<String, String> map = new LinkedHashMap<>();
+		map.put("key", "value");
+		ObjectWriter writer = JacksonRegistry.getResponseWriter(LinkedHashMap.class);
+
+		ClosingTracker out = new ClosingTracker();
+		writer.writeValue(out, map);
+		assertFalse(out.closed);
+		// the JSON could be wrapped
+		out.write("</textarea>".getBytes("UTF-8"));
+		assertEquals("{\"key\":\"value\"}</textarea>", out.toString("UTF-8"));
+
+		StringWriter sw = new StringWriter() {
+			@Override
+			public void close() throws IOException {
+				fail("the writer mustn't be closed");
+			}
+		};
+		writer.writeValue(sw, map);
+		assertEquals("{\"key\":\"value\"}", sw.toString());
+	}
+
+	@Test
+	public void testRegistry() throws Exception {
+		JacksonRegistry.warmUp(LinkedHashMap.class);
+		assertSame(JacksonRegistry.getResponseWriter(LinkedHashMap.class), JacksonRegistry.getResponseWriter(LinkedHashMap.class));
+		assertSame(JacksonRegistry.getWriter(LinkedHashMap.class), JacksonRegistry.getWriter(LinkedHashMap.class));
+		assertNotSame(JacksonRegistry.getResponseWriter(LinkedHashMap.class), JacksonRegistry.getWriter(LinkedHashMap.class));
+		assertSame(JacksonRegistry.getReader(LinkedHashMap.class), JacksonRegistry.getReader(LinkedHashMap.class));
+
+		Map<?, ?> map = JacksonRegistry.getReader(LinkedHashMap.class).readValue("{\"a\":\"\\/b\"}");
+		assertEquals("/b", map.get("a"));
+	}
+
+	private static class ClosingTracker extends ByteArrayOutputStream {
+		private boolean closed = false;
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	@Test
+	public void testCoalescing() throws Exception {
+		final SingleFlight<String, Integer> flights = new SingleFlight<>();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<Integer> task = new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				calls.incrementAndGet();
+				started.countDown();
+				release.await();
+				return 42;
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return flights.execute("key", task, 0);
+				}
+			}));
+			started.await();
+			for(int i = 0; i < 4; i++) {
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						return flights.execute("key", task, 10000);
+					}
+				}));
+			}
+			// give the waiters the chance to join the computation in flight
+			Thread.sleep(200);
+			release.countDown();
+			for(Future<Integer> result : results)
+				assertEquals(Integer.valueOf(42), result.get());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, calls.get());
+		assertEquals(0, flights.getInFlightCount());
+	}
+
+	@Test
+	public void testException() throws Exception {
+		SingleFlight<String, Integer> flights = new SingleFlight<>();
+		try {
+			flights.execute("key", new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					throw new IOException("broken");
+				}
+			}, 0);
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals(0, flights.getInFlightCount());
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void testTimeout() throws Exception {
+		final SingleFlight<String, Integer> flights = new SingleFlight<>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread leader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					flights.execute("key", new Callable<Integer>() {
+						@Override
+						public Integer call() throws Exception {
+							started.countDown();
+							release.await();
+							return 1;
+						}
+					}, 0);
+				} catch (Exception e) {
+					// not of interest
+				}
+			}
+		};
+		leader.start();
+		try {
+			started.await();
+			flights.execute("key", new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return 2;
+				}
+			}, 50);
+		} finally {
+			release.countDown();
+			leader.join();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import codes.thischwa.c5c.requestcycle.response.mode.FileInfo;
+import codes.thischwa.c5c.requestcycle.response.mode.FileInfoProperties;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Measures the serialization of a 'getfolder' response by the pre-built writer of the {@link JacksonRegistry}. The
+ * former behavior, a new {@link ObjectMapper} per call and the slashes escaped afterwards, is measured for comparison.<br/>
+ * Usage: <code>_JacksonBenchmark [items] [rounds]</code>
+ */
+public class _JacksonBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int items = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5000;
+
+		Date date = new Date();
+		Map<String, FileInfo> folder = new LinkedHashMap<>();
+		for(int i = 0; i < items; i++) {
+			FileInfo fileInfo = new FileInfo("/userfiles/images/", true, false);
+			if(i % 10 == 0)
+				fileInfo.setFileProperties(new FileInfoProperties("folder" + i, false, date));
+			else
+				fileInfo.setFileProperties(new FileInfoProperties("image" + i + ".png", false, 800, 600, 123456, date));
+			folder.put(fileInfo.getPath(), fileInfo);
+		}
+
+		// warm up
+		for(int i = 0; i < rounds / 5; i++) {
+			serializeWithNewMapper(folder);
+			serializeWithRegistry(folder);
+		}
+
+		long newMapper = 0;
+		long registry = 0;
+		for(int i = 0; i < rounds; i++) {
+			long start = System.nanoTime();
+			serializeWithNewMapper(folder);
+			newMapper += System.nanoTime() - start;
+			start = System.nanoTime();
+			serializeWithRegistry(folder);
+			registry += System.nanoTime() - start;
+		}
+		System.out.println(String.format("items: %d, rounds: %d", items, rounds));
+		System.out.println(String.format("new mapper per call: %8.3f ms/response", newMapper / (rounds * 1000000d)));
+		System.out.println(String.format("registry writer:     %8.3f ms/response", registry / (rounds * 1000000d)));
+	}
+
+	private static String serializeWithNewMapper(Object obj) throws Exception {
+		return new ObjectMapper().writeValueAsString(obj).replace("/", "\\/");
+	}
+
+	private static String serializeWithRegistry(Object obj) throws Exception {
+		ObjectWriter writer = JacksonRegistry.getResponseWriter(obj.getClass());
+		StringWriter out = new StringWriter();
+		JsonGenerator generator = writer.getFactory().createGenerator(out);
+		writer.writeValue(generator, obj);
+		generator.close();
+		return out.toString();
+	}
+}